@@ -0,0 +1,64 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * A Hikari pool with a cap on the threads queued for a connection. Past the cap a checkout fails at once
+ * instead of waiting connectionTimeout, so a burst of one kind of traffic cannot pile up threads.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final HikariDataSource pool;
+    private final int queueLimit;
+    private final Counter rejected;
+
+    // queueLimit <= 0: no cap, only Hikari's connectionTimeout
+    public BulkheadDataSource(HikariDataSource pool, int queueLimit, MeterRegistry registry) {
+        super(pool);
+        this.pool = pool;
+        this.queueLimit = queueLimit;
+        this.rejected = registry == null ? null : Counter.builder("datasource.bulkhead.rejected")
+                .description("Connection requests refused because too many were already waiting")
+                .tag("pool", pool.getPoolName())
+                .register(registry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkQueue();
+        return super.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        checkQueue();
+        return super.getConnection(username, password);
+    }
+
+    public String getPoolName() {
+        return pool.getPoolName();
+    }
+
+    private void checkQueue() throws SQLException {
+        if (queueLimit <= 0) return;
+        HikariPoolMXBean mx = pool.getHikariPoolMXBean(); // null until the pool has started
+        if (mx != null && mx.getThreadsAwaitingConnection() >= queueLimit) {
+            if (rejected != null) rejected.increment();
+            throw new BulkheadFullException(pool.getPoolName(), queueLimit);
+        }
+    }
+
+    public static class BulkheadFullException extends SQLTransientConnectionException {
+        BulkheadFullException(String pool, int queueLimit) {
+            super("Pool '" + pool + "' already has " + queueLimit + " requests waiting for a connection.");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.config;
+
+import com.example.demo.entities.SettingEntity;
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.UserEntity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * JPA listener of the second-level cached entities. Local caches are kept coherent by Hibernate itself;
+ * this tells the other replicas (PostgreSQL NOTIFY) which entries to evict once the transaction commits.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationPublisher {
+
+    public static final String CHANNEL = "l2_cache_invalidation";
+
+    // payload limit of pg_notify is 8000 bytes
+    private static final int MAX_PAYLOAD = 7000;
+
+    private final DataSource dataSource;
+    private final String instanceId = UUID.randomUUID().toString();
+    private volatile boolean enabled;
+
+    public CacheInvalidationPublisher(DataSource dataSource,
+                                      @Value("${app.cache.invalidation.enabled:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        String key = keyOf(entity);
+        if (key != null) publishAfterCommit(key);
+    }
+
+    // Also used by write paths that bypass the entity (bulk/native updates), e.g. "user:*"
+    public void publishAfterCommit(String key) {
+        if (!enabled) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            notifyOthers(List.of(key));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<String> keys = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyOthers(keys);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationPublisher.this);
+                }
+            });
+            pending = keys;
+        }
+        pending.add(key);
+    }
+
+    //Helpers
+
+    static String keyOf(Object entity) {
+        if (entity instanceof ToolEntity t) return "tool:" + t.getId();
+        if (entity instanceof UserEntity u) return "user:" + u.getId();
+        if (entity instanceof SettingEntity s) return "setting:" + s.getPrice();
+        return null;
+    }
+
+    // Own connection in autocommit: the business transaction is already committed at this point
+    private void notifyOthers(Collection<String> keys) {
+        try (Connection conn = dataSource.getConnection()) {
+            if (!conn.isWrapperFor(PGConnection.class)) {
+                log.info("Datasource is not PostgreSQL, cross-node cache invalidation disabled");
+                enabled = false;
+                return;
+            }
+            try (PreparedStatement ps = conn.prepareStatement("select pg_notify(?, ?)")) {
+                for (String payload : payloads(keys)) {
+                    ps.setString(1, CHANNEL);
+                    ps.setString(2, payload);
+                    ps.execute();
+                }
+            }
+        } catch (SQLException ex) {
+            // other nodes fall back to the region TTL
+            log.warn("Could not publish cache invalidation {}", keys, ex);
+        }
+    }
+
+    // "instanceId|tool:1,user:7", split so no payload goes over the limit
+    private List<String> payloads(Collection<String> keys) {
+        List<String> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(instanceId).append('|');
+        int base = sb.length();
+        for (String key : keys) {
+            if (sb.length() > base && sb.length() + key.length() + 1 > MAX_PAYLOAD) {
+                out.add(sb.toString());
+                sb.setLength(base);
+            }
+            if (sb.length() > base) sb.append(',');
+            sb.append(key);
+        }
+        if (sb.length() > base) out.add(sb.toString());
+        return out;
+    }
+}
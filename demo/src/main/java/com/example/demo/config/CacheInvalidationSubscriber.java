@@ -0,0 +1,123 @@
+package com.example.demo.config;
+
+import com.example.demo.entities.SettingEntity;
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.UserEntity;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Listens for invalidations published by other replicas and evicts the matching second-level cache entries.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.cache.invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationSubscriber implements SmartLifecycle {
+
+    private static final int POLL_MILLIS = 5000;
+
+    private final DataSource dataSource;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheInvalidationPublisher publisher;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::listenLoop, "l2-cache-invalidation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection conn = dataSource.getConnection()) {
+                if (!conn.isWrapperFor(PGConnection.class)) {
+                    log.info("Datasource is not PostgreSQL, cross-node cache invalidation disabled");
+                    return;
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CacheInvalidationPublisher.CHANNEL);
+                }
+                // whatever changed while we were not listening is unknown
+                cache().evictAllRegions();
+
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) apply(n.getParameter());
+                }
+            } catch (SQLException ex) {
+                if (!running) return;
+                log.warn("Cache invalidation listener lost its connection, retrying", ex);
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void apply(String payload) {
+        int sep = payload.indexOf('|');
+        if (sep < 0 || payload.substring(0, sep).equals(publisher.getInstanceId())) return;
+
+        Cache cache = cache();
+        for (String key : payload.substring(sep + 1).split(",")) {
+            int colon = key.indexOf(':');
+            if (colon < 0) continue;
+            String type = key.substring(0, colon);
+            String id = key.substring(colon + 1);
+            switch (type) {
+                case "tool" -> evict(cache, ToolEntity.class, id);
+                case "user" -> evict(cache, UserEntity.class, id);
+                case "setting" -> cache.evictEntityData(SettingEntity.class, id);
+                default -> { }
+            }
+        }
+        // cached natural-key lookups (findByRut, findByKeycloakId) may point to stale rows
+        cache.evictQueryRegions();
+    }
+
+    private void evict(Cache cache, Class<?> entity, String id) {
+        if ("*".equals(id) || "null".equals(id)) {
+            cache.evictEntityData(entity);
+        } else {
+            cache.evictEntityData(entity, Long.valueOf(id));
+        }
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.config;
+
+import com.example.demo.entities.LoanEntity;
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.UserEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * JPA listener that stamps written tool, loan and client rows with a value of the change_seq sequence
+ * (column, sequence and indexes live in schema.sql). Numbers are assigned right before the commit while holding
+ * a per-table transaction advisory lock, so within a table sequence order is commit order and "changes since N"
+ * never skips a row that committed late; writers of different tables do not wait on each other.
+ */
+@Slf4j
+@Component
+public class ChangeSequenceTracker {
+
+    public static final String TOOL = "tool";
+    public static final String LOAN = "loan";
+    public static final String CLIENT = "client";
+
+    // pg_advisory_xact_lock keys, one per table, taken in this order (schema.sql uses the same values)
+    static final Map<String, Long> LOCK_KEYS = Map.of(TOOL, 0x43534552L, LOAN, 0x43534553L, CLIENT, 0x43534554L);
+
+    private static final List<String> TABLES = List.of(TOOL, LOAN, CLIENT);
+
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+    private volatile boolean enabled = true;
+
+    public ChangeSequenceTracker(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onChange(Object entity) {
+        if (entity instanceof ToolEntity t) markChanged(TOOL, List.of(t.getId()));
+        else if (entity instanceof LoanEntity l) markChanged(LOAN, List.of(l.getId()));
+        else if (entity instanceof UserEntity u) markChanged(CLIENT, List.of(u.getId()));
+    }
+
+    // For writes that bypass the entities (JDBC/bulk). An empty id list still stamps rows left without a number.
+    public void markChanged(String table, Collection<Long> ids) {
+        if (!TABLES.contains(table)) throw new IllegalArgumentException("Not a tracked table: " + table);
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) return;
+
+        @SuppressWarnings("unchecked")
+        Map<String, Set<Long>> pending = (Map<String, Set<Long>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory.getObject());
+            if (em == null) return;
+
+            Map<String, Set<Long>> changes = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            // Runs inside Hibernate's commit, after the final flush (so @PostUpdate rows are in) and before JDBC commit
+            em.unwrap(SessionImplementor.class).getActionQueue()
+                    .registerProcess(session -> session.doWork(conn -> assign(conn, changes)));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeSequenceTracker.this);
+                }
+            });
+            pending = changes;
+        }
+        Set<Long> tableIds = pending.computeIfAbsent(table, k -> new LinkedHashSet<>());
+        for (Long id : ids) if (id != null) tableIds.add(id);
+    }
+
+    //Helpers
+
+    private void assign(Connection conn, Map<String, Set<Long>> changes) throws SQLException {
+        if (changes.isEmpty()) return;
+        if (!conn.isWrapperFor(PGConnection.class)) {
+            log.info("Datasource is not PostgreSQL, change sequence tracking disabled");
+            enabled = false;
+            return;
+        }
+        // Fixed table order so two writers touching the same tables cannot deadlock on the locks
+        for (String table : TABLES) {
+            Set<Long> ids = changes.get(table);
+            if (ids == null) continue;
+            // Held until commit: the next writer of this table numbers its rows only after these are visible
+            try (PreparedStatement lock = conn.prepareStatement("select pg_advisory_xact_lock(?)")) {
+                lock.setLong(1, LOCK_KEYS.get(table));
+                lock.execute();
+            }
+            if (!ids.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "update " + table + " set change_seq = nextval('change_seq') where id = any(?)")) {
+                    ps.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+                    ps.executeUpdate();
+                }
+            }
+            // separate statement so it is answered by the partial index on change_seq is null
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "update " + table + " set change_seq = nextval('change_seq') where change_seq is null")) {
+                ps.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces Boot's single pool with bulkheaded pools behind a {@link RoutingDataSource}:
+ * "transactional" (loan/tool writes, everything by default), "reporting" (the services' read-only methods,
+ * on the primary) and optionally "replica". Every pool takes the spring.datasource.hikari.* tuning, then
+ * app.datasource.&lt;pool&gt;.hikari.* on top (the replica also inherits the reporting settings), e.g. its
+ * size, connection-timeout and a connection-init-sql setting the PostgreSQL statement_timeout.
+ * Checkout waits are published per pool as hikaricp.connections.acquire{pool}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true", matchIfMissing = true)
+public class DataSourceRoutingConfig {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 ObjectProvider<MeterRegistry> meterRegistry,
+                                 @Value("${app.datasource.transactional.queue-limit:0}") int transactionalQueue,
+                                 @Value("${app.datasource.reporting.queue-limit:20}") int reportingQueue,
+                                 @Value("${app.datasource.replica.enabled:false}") boolean replicaEnabled,
+                                 @Value("${app.datasource.replica.retry-after-millis:30000}") long retryAfterMillis,
+                                 @Value("${app.datasource.replica.read-your-writes-millis:5000}") long readYourWritesMillis) {
+        Binder binder = Binder.get(environment);
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+
+        HikariDataSource transactional = pool("transactional", primaryBuilder(properties), binder, registry,
+                "app.datasource.transactional.hikari");
+        HikariDataSource reporting = pool("reporting", primaryBuilder(properties), binder, registry,
+                "app.datasource.reporting.hikari");
+
+        BulkheadDataSource replica = null;
+        if (replicaEnabled) {
+            DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(environment.getRequiredProperty("app.datasource.replica.url"))
+                    .username(environment.getProperty("app.datasource.replica.username", properties.determineUsername()))
+                    .password(environment.getProperty("app.datasource.replica.password", properties.determinePassword()));
+            HikariDataSource replicaPool = pool("replica", builder, binder, registry,
+                    "app.datasource.reporting.hikari", "app.datasource.replica.hikari");
+            // a replica that is down must not stall startup, the router falls back to the reporting pool
+            replicaPool.setInitializationFailTimeout(-1);
+            replica = new BulkheadDataSource(replicaPool, reportingQueue, registry);
+        }
+
+        return new LazyConnectionDataSourceProxy(new RoutingDataSource(
+                new BulkheadDataSource(transactional, transactionalQueue, registry),
+                new BulkheadDataSource(reporting, reportingQueue, registry),
+                replica,
+                Duration.ofMillis(retryAfterMillis),
+                Duration.ofMillis(readYourWritesMillis)));
+    }
+
+    // schema.sql lifts statement_timeout on the connection it runs on. Runs once every singleton (the deferred SQL
+    // init included) is up and before the server and schedulers start: idle connections are closed now, busy ones on
+    // return, so each one in service has its connection-init-sql again.
+    @Bean
+    public SmartInitializingSingleton evictSchemaInitConnections() {
+        return () -> pools.forEach(pool -> {
+            HikariPoolMXBean mx = pool.getHikariPoolMXBean();
+            if (mx != null) mx.softEvictConnections(); // null: the pool never opened a connection
+        });
+    }
+
+    @PreDestroy
+    void closePools() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    //Helpers
+
+    private static DataSourceBuilder<HikariDataSource> primaryBuilder(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class);
+    }
+
+    private HikariDataSource pool(String name, DataSourceBuilder<HikariDataSource> builder, Binder binder,
+                                  MeterRegistry registry, String... overrides) {
+        HikariDataSource pool = builder.build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        for (String prefix : overrides) binder.bind(prefix, Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        if (registry != null) pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        pools.add(pool);
+        return pool;
+    }
+}
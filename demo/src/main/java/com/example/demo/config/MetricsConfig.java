@@ -0,0 +1,40 @@
+package com.example.demo.config;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.services.ToolCatalog;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// @Timed service methods and the stock gauges; scraped at /actuator/prometheus
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    // tools.stock{state=...}: units per state, read from the in-memory catalog at scrape time
+    @Bean
+    public MeterBinder toolStockGauges(ToolCatalog toolCatalog) {
+        return registry -> {
+            for (ToolState state : ToolState.values()) {
+                Gauge.builder("tools.stock", toolCatalog, c -> stockOf(c, state))
+                        .tag("state", state.name().toLowerCase())
+                        .description("Units of tools in this state")
+                        .register(registry);
+            }
+        };
+    }
+
+    private static double stockOf(ToolCatalog catalog, ToolState state) {
+        long units = 0;
+        for (ToolEntity t : catalog.current().byState(state)) units += t.getAmount();
+        return units;
+    }
+}
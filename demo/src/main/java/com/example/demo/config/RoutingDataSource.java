@@ -0,0 +1,154 @@
+package com.example.demo.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Picks the pool of each connection. Writes and anything outside the application's own read-only methods use
+ * the transactional pool. The services' {@code @Transactional(readOnly = true)} methods (reporting reads) use
+ * the read replica when there is one, and the reporting pool otherwise, so they never take a connection that
+ * a loan checkout needs. Must sit behind a LazyConnectionDataSourceProxy, so the connection is only picked
+ * once the transaction's read-only flag and name are set.
+ * <p>
+ * Only transactions named after a class of this application count as reporting: Spring Data opens read-only
+ * transactions for its own CRUD methods (findAll, findById...), and those are often read-then-write paths
+ * (tool catalog reloads, user updates) that must see the primary.
+ * <p>
+ * Reads validated against a change counter (ETag responses) run through {@link #onPrimary}: the counter lives on
+ * the primary, so rows from a lagging replica would be cached by clients under a newer ETag.
+ */
+@Slf4j
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { TRANSACTIONAL, REPORTING, REPLICA }
+
+    private static final String APP_PACKAGE = "com.example.demo.";
+
+    private final DataSource transactional;
+    private final DataSource reporting;
+    private final DataSource replica;
+    private final long retryAfterMillis;
+    private final Cache<String, Boolean> recentWriters;
+
+    private volatile long replicaDownUntil;
+
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    // replica: null when there is none. readYourWrites: how long a user who just committed a write keeps
+    // reading from the primary (zero = off)
+    public RoutingDataSource(DataSource transactional, DataSource reporting, DataSource replica,
+                             Duration retryAfter, Duration readYourWrites) {
+        this.transactional = transactional;
+        this.reporting = reporting;
+        this.replica = replica;
+        this.retryAfterMillis = retryAfter.toMillis();
+        this.recentWriters = readYourWrites.isZero() ? null
+                : Caffeine.newBuilder().expireAfterWrite(readYourWrites).maximumSize(100_000).build();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.TRANSACTIONAL, transactional);
+        targets.put(Target.REPORTING, reporting);
+        if (replica != null) targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(transactional);
+        afterPropertiesSet();
+    }
+
+    // Runs a read-only call on the reporting pool (the primary) even when a replica is up
+    public static <T> T onPrimary(Supplier<T> read) {
+        Boolean outer = PRIMARY_READS.get();
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (outer == null) PRIMARY_READS.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) return Target.TRANSACTIONAL;
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriter();
+            return Target.TRANSACTIONAL;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        if (name == null || !name.startsWith(APP_PACKAGE)) return Target.TRANSACTIONAL;
+        if (PRIMARY_READS.get() != null) return Target.REPORTING;
+        if (recentWriters != null) {
+            String user = currentUser();
+            if (user != null && recentWriters.getIfPresent(user) != null) return Target.REPORTING;
+        }
+        boolean replicaUp = replica != null && System.currentTimeMillis() >= replicaDownUntil;
+        return replicaUp ? Target.REPLICA : Target.REPORTING;
+    }
+
+    // A replica that cannot hand out a connection is skipped for retryAfter; its reads go to the reporting pool.
+    // A full replica queue is overload, not an outage: that one is not spilled onto the primary.
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object target = determineCurrentLookupKey();
+        if (target != Target.REPLICA) return (target == Target.REPORTING ? reporting : transactional).getConnection();
+        try {
+            return replica.getConnection();
+        } catch (BulkheadDataSource.BulkheadFullException ex) {
+            throw ex;
+        } catch (SQLException ex) {
+            replicaDown(ex);
+            return reporting.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Object target = determineCurrentLookupKey();
+        if (target != Target.REPLICA)
+            return (target == Target.REPORTING ? reporting : transactional).getConnection(username, password);
+        try {
+            return replica.getConnection(username, password);
+        } catch (BulkheadDataSource.BulkheadFullException ex) {
+            throw ex;
+        } catch (SQLException ex) {
+            replicaDown(ex);
+            return reporting.getConnection(username, password);
+        }
+    }
+
+    //Helpers
+
+    private void replicaDown(SQLException ex) {
+        replicaDownUntil = System.currentTimeMillis() + retryAfterMillis;
+        log.warn("Read replica unavailable, using the reporting pool for {} ms: {}", retryAfterMillis, ex.getMessage());
+    }
+
+    // The write counts once it commits; a rolled back transaction leaves nothing to read back
+    private void rememberWriter() {
+        if (recentWriters == null || !TransactionSynchronizationManager.isSynchronizationActive()) return;
+        String user = currentUser();
+        if (user == null) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(user, Boolean.TRUE);
+            }
+        });
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return (auth == null || !auth.isAuthenticated()) ? null : auth.getName();
+    }
+}
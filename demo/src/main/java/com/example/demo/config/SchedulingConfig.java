@@ -0,0 +1,10 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Background jobs (overdue detection, nightly fine accrual, SSE heartbeats); kept out of the application class so slice tests skip it
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
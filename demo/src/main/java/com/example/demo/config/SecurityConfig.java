@@ -30,6 +30,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll() // preflight CORS
                         .requestMatchers("/public/**").permitAll()
+                        .requestMatchers("/actuator/health/**").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/auth/me").authenticated()
                         .requestMatchers("/users/me").authenticated()
                         .requestMatchers("/users/**").authenticated()
@@ -72,10 +74,10 @@ public class SecurityConfig {
         config.setAllowedMethods(List.of("GET","POST","PUT","PATCH","DELETE","OPTIONS"));
 
         // Allowed Headers includes Authorization for Bearer
-        config.setAllowedHeaders(List.of("Authorization","Content-Type","X-Requested-With"));
+        config.setAllowedHeaders(List.of("Authorization","Content-Type","X-Requested-With","If-None-Match"));
 
         //Exposed Headers
-        config.setExposedHeaders(List.of("Authorization"));
+        config.setExposedHeaders(List.of("Authorization", "X-Catalog-Version", "ETag"));
 
         //No cookies
         config.setAllowCredentials(false);
@@ -0,0 +1,67 @@
+package com.example.demo.config;
+
+/**
+ * SQL statements executed by the current thread, counted per scope (an HTTP request, a block in a test).
+ * Scopes nest: closing one adds its count to the enclosing one. Fed by {@link StatementCountingConfig}.
+ */
+public final class StatementCounter {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<String> REPOSITORY_METHOD = new ThreadLocal<>();
+
+    private StatementCounter() {}
+
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    // Repository method running right now on this thread (e.g. "LoanRepository.findByIdIn"), null outside one
+    public static String repositoryMethod() {
+        return REPOSITORY_METHOD.get();
+    }
+
+    static void recordStatement() {
+        Scope scope = CURRENT.get();
+        if (scope != null) scope.count++;
+    }
+
+    // Returns the previous method, to be restored by exitRepository (repositories call each other)
+    static String enterRepository(String method) {
+        String previous = REPOSITORY_METHOD.get();
+        REPOSITORY_METHOD.set(method);
+        return previous;
+    }
+
+    static void exitRepository(String previous) {
+        if (previous == null) REPOSITORY_METHOD.remove();
+        else REPOSITORY_METHOD.set(previous);
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private int count;
+        private boolean closed;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                parent.count += count;
+                CURRENT.set(parent);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Wraps the DataSource with datasource-proxy so every statement is counted ({@link StatementCounter}) and slow
+ * ones are logged with the repository method that issued them. Each HTTP request records its statement count
+ * in http.server.statements{method,uri}, so an endpoint going N+1 shows up as a jump in that summary.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.sql.statement-counting.enabled", havingValue = "true", matchIfMissing = true)
+public class StatementCountingConfig {
+
+    // Request attribute holding the statement count of the request (read by tests through MockMvc)
+    public static final String COUNT_ATTRIBUTE = StatementCounter.class.getName() + ".count";
+
+    // static: the DataSource must be wrapped before anything else is initialized with it
+    @Bean
+    public static BeanPostProcessor statementCountingDataSource(
+            @Value("${app.sql.slow-query-millis:500}") long slowQueryMillis) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof ProxyDataSource)) {
+                    return wrap(ds, slowQueryMillis);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public RepositoryMethodTracker repositoryMethodTracker() {
+        return new RepositoryMethodTracker();
+    }
+
+    @Bean
+    public StatementCountFilter statementCountFilter(
+            MeterRegistry registry,
+            @Value("${app.sql.statement-warn-threshold:50}") int warnThreshold) {
+        return new StatementCountFilter(registry, warnThreshold);
+    }
+
+    static DataSource wrap(DataSource dataSource, long slowQueryMillis) {
+        return ProxyDataSourceBuilder.create(dataSource)
+                .name("counted")
+                .listener(new CountingListener(slowQueryMillis))
+                .build();
+    }
+
+    static class CountingListener implements QueryExecutionListener {
+        private final long slowQueryMillis;
+
+        CountingListener(long slowQueryMillis) {
+            this.slowQueryMillis = slowQueryMillis;
+        }
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        // One execution is one round trip: a JDBC batch counts once, however many rows it carries
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            StatementCounter.recordStatement();
+            if (execInfo.getElapsedTime() < slowQueryMillis) return;
+
+            String origin = StatementCounter.repositoryMethod();
+            log.warn("Slow query ({} ms) from {}: {}", execInfo.getElapsedTime(),
+                    origin != null ? origin : callerOutsideRepositories(),
+                    queryInfoList.isEmpty() ? "?" : queryInfoList.get(0).getQuery());
+        }
+
+        // JdbcTemplate work (imports, bulk copy, jobs) has no repository method: report the first app frame
+        private static String callerOutsideRepositories() {
+            return StackWalker.getInstance().walk(frames -> frames
+                    .filter(f -> f.getClassName().startsWith("com.example.demo.")
+                            && !f.getClassName().startsWith("com.example.demo.config."))
+                    .findFirst()
+                    .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                            + "." + f.getMethodName() + ":" + f.getLineNumber())
+                    .orElse("unknown"));
+        }
+    }
+
+    // Remembers which Spring Data repository method is running, for the slow query log
+    @Aspect
+    static class RepositoryMethodTracker {
+        @Around("target(org.springframework.data.repository.Repository)")
+        public Object track(ProceedingJoinPoint pjp) throws Throwable {
+            String previous = StatementCounter.enterRepository(
+                    repositoryName(pjp.getTarget()) + "." + pjp.getSignature().getName());
+            try {
+                return pjp.proceed();
+            } finally {
+                StatementCounter.exitRepository(previous);
+            }
+        }
+
+        private static String repositoryName(Object repository) {
+            for (Class<?> type : AopProxyUtils.proxiedUserInterfaces(repository)) {
+                if (type.getName().startsWith("com.example.demo.")) return type.getSimpleName();
+            }
+            return repository.getClass().getSimpleName();
+        }
+    }
+
+    static class StatementCountFilter extends OncePerRequestFilter {
+        private final MeterRegistry registry;
+        private final int warnThreshold;
+
+        StatementCountFilter(MeterRegistry registry, int warnThreshold) {
+            this.registry = registry;
+            this.warnThreshold = warnThreshold;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain chain) throws ServletException, IOException {
+            StatementCounter.Scope scope = StatementCounter.open();
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                scope.close();
+                int count = scope.count();
+                request.setAttribute(COUNT_ATTRIBUTE, count);
+
+                // the route template, not the raw path, so ids do not multiply the series
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+                DistributionSummary.builder("http.server.statements")
+                        .description("SQL statements executed per request")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri)
+                        .register(registry)
+                        .record(count);
+                if (count > warnThreshold) {
+                    log.warn("{} {} ran {} SQL statements", request.getMethod(), uri, count);
+                }
+            }
+        }
+    }
+}
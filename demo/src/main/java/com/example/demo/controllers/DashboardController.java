@@ -0,0 +1,23 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.DashboardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/dashboard")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    // Everything the admin home needs in one call (may be a few seconds old, see computedAt)
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping
+    public ResponseEntity<DashboardService.Dashboard> dashboard() {
+        return ResponseEntity.ok(dashboardService.current());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.BulkCopyService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Gzip dumps of kardex / loan / loan_item for archiving and environment seeding (COPY on PostgreSQL)
+@RestController
+@RequestMapping("/admin/data")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class DataTransferController {
+
+    private final BulkCopyService bulkCopyService;
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping("/{table}/export")
+    public ResponseEntity<?> export(@PathVariable String table,
+                                    @RequestParam(defaultValue = "CSV") BulkCopyService.Format format) {
+        BulkCopyService.Table t;
+        try {
+            t = BulkCopyService.Table.of(table);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        String file = t.name().toLowerCase() + (format == BulkCopyService.Format.BINARY ? ".bin.gz" : ".csv.gz");
+        StreamingResponseBody body = out -> bulkCopyService.export(t, format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    // Body is the gzip file as produced by export; load loans before loan items
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping(value = "/{table}/import", consumes = {"application/gzip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> load(@PathVariable String table,
+                                  @RequestParam(defaultValue = "CSV") BulkCopyService.Format format,
+                                  HttpServletRequest request) {
+        try {
+            long rows = bulkCopyService.load(BulkCopyService.Table.of(table), format, request.getInputStream());
+            return ResponseEntity.ok(Map.of("rows", rows));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Could not load file: " + e.getMessage());
+        }
+    }
+}
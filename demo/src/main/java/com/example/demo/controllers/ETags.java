@@ -0,0 +1,30 @@
+package com.example.demo.controllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+// Strong ETags derived from the change counters; checked before the listing is built
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(String aggregate, long version) {
+        return "\"" + aggregate + "-" + version + "\"";
+    }
+
+    // For responses that also depend on request parameters: the scope tells apart the variants of one URL
+    static String of(String aggregate, long version, String scope) {
+        return "\"" + aggregate + "-" + version + "-" + scope + "\"";
+    }
+
+    // no-cache = browsers may keep the body but must revalidate it with If-None-Match
+    static ResponseEntity.BodyBuilder ok(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache());
+    }
+
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+    }
+}
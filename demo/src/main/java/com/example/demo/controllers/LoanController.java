@@ -1,7 +1,6 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.LoanEntity;
-import com.example.demo.repositories.LoanRepository;
 import com.example.demo.services.LoanService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -11,7 +10,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import com.example.demo.repositories.LoanItemRepository;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.data.domain.PageRequest;
 
 import java.time.LocalDate;
@@ -26,10 +25,6 @@ public class LoanController {
 
     @Autowired
     private LoanService loanService;
-    @Autowired
-    private LoanItemRepository loanItemRepository;
-    @Autowired
-    private LoanRepository loanRepository;
 
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @PostMapping
@@ -121,6 +116,27 @@ public class LoanController {
         }
     }
 
+    // Bulk return: each loan is reported as ok (with its fines) or with the reason it was skipped
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping("/return")
+    public ResponseEntity<?> returnLoans(@RequestBody List<LoanService.ReturnRequest> body) {
+        try {
+            return ResponseEntity.ok(loanService.returnLoans(body));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping("/pay-fines")
+    public ResponseEntity<?> payFinesBulk(@RequestBody List<LoanService.FinePayment> body) {
+        try {
+            return ResponseEntity.ok(loanService.payFines(body));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
     //Helpers:
 
     //Accepts "YYYY-MM-DD" or ISO datetime
@@ -181,16 +197,16 @@ public class LoanController {
     public ResponseEntity<?> topTools(
             @RequestParam(required = false) Integer limit,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            WebRequest request
     ) {
         int size = (limit == null || limit <= 0) ? 10 : limit;
+        // the ranking only changes when a loan is written; limit and dates pick which ranking
+        String scope = "top" + size + "_" + (start == null ? "*" : start) + "_" + (end == null ? "*" : end);
+        String etag = ETags.of("loans", loanService.version(), scope);
+        if (request.checkNotModified(etag)) return ETags.notModified(etag);
 
-        boolean hasStart = (start != null);
-        boolean hasEnd   = (end   != null);
-
-        List<Object[]> rows = loanItemRepository.topByToolName(
-                hasStart, start, hasEnd, end, PageRequest.of(0, size)
-        );
+        List<Object[]> rows = loanService.topTools(start, end, size);
 
         List<Map<String, Object>> out = new java.util.ArrayList<>();
         for (Object[] r : rows) {
@@ -199,7 +215,7 @@ public class LoanController {
             m.put("times", ((Number) r[1]).longValue());
             out.add(m);
         }
-        return ResponseEntity.ok(out);
+        return ETags.ok(etag).body(out);
     }
 
     @PreAuthorize("hasAnyRole('ADMIN')")
@@ -235,7 +251,7 @@ public class LoanController {
         Sort.Direction dir = (s.length > 1 && "asc".equalsIgnoreCase(s[1])) ? Sort.Direction.ASC : Sort.Direction.DESC;
         PageRequest pr = PageRequest.of(Math.max(page,0), Math.max(size,1), Sort.by(dir, s[0]));
 
-        return ResponseEntity.ok(loanRepository.findPageByRutUser(rutUser, pr));
+        return ResponseEntity.ok(loanService.listLoansByUser(rutUser, pr));
     }
 
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
@@ -0,0 +1,76 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.FlightRecordingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Java Flight Recorder on the node that serves the request (open the dump in JDK Mission Control)
+@RestController
+@RequestMapping("/admin/recording")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class RecordingController {
+
+    private final FlightRecordingService recordingService;
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping
+    public ResponseEntity<FlightRecordingService.RecordingStatus> status() {
+        return ResponseEntity.ok(recordingService.status());
+    }
+
+    // maxAgeMinutes: how much history the recording keeps on disk
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping("/start")
+    public ResponseEntity<?> start(@RequestParam(defaultValue = "default") String settings,
+                                   @RequestParam(required = false) Long maxAgeMinutes) {
+        try {
+            Duration maxAge = maxAgeMinutes == null ? null : Duration.ofMinutes(maxAgeMinutes);
+            return ResponseEntity.ok(recordingService.start(settings, maxAge));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        try {
+            return ResponseEntity.ok(recordingService.stop());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping("/dump")
+    public ResponseEntity<?> dump() {
+        Path file;
+        try {
+            file = recordingService.dump();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"recording.jfr\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+}
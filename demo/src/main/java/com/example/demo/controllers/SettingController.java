@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.Map;
 
@@ -19,8 +20,10 @@ public class SettingController {
 
     //logged users can see it
     @GetMapping("/daily-rate")
-    public ResponseEntity<Map<String, Object>> getDailyRate() {
-        return ResponseEntity.ok(Map.of("value", setting.getDailyRentPrice()));
+    public ResponseEntity<Map<String, Object>> getDailyRate(WebRequest request) {
+        String etag = ETags.of("settings", setting.version());
+        if (request.checkNotModified(etag)) return ETags.notModified(etag);
+        return ETags.ok(etag).body(Map.of("value", setting.getDailyRentPrice()));
     }
 
     //Just "Admin" can update it
@@ -33,4 +36,25 @@ public class SettingController {
         int saved = setting.setDailyRentPrice(v);
         return ResponseEntity.ok(Map.of("value", saved));
     }
+
+    //Late fine per day accrued every night on loans still out
+    @GetMapping("/daily-fine")
+    public ResponseEntity<Map<String, Object>> getDailyFine(WebRequest request) {
+        String etag = ETags.of("settings", setting.version());
+        if (request.checkNotModified(etag)) return ETags.notModified(etag);
+        return ETags.ok(etag).body(Map.of("value", setting.getDailyFineRate()));
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PutMapping("/daily-fine")
+    public ResponseEntity<Map<String, Object>> updateDailyFine(@RequestBody Map<String, Object> body) {
+        Object raw = body.get("value");
+        if (raw == null) return ResponseEntity.badRequest().body(Map.of("error","value is required"));
+        int v = (raw instanceof Number n) ? n.intValue() : Integer.parseInt(raw.toString());
+        try {
+            return ResponseEntity.ok(Map.of("value", setting.setDailyFineRate(v)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.ChangeStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Live "tools" / "loan" events for the admin screens; a "resync" event means reload the REST listing
+@RestController
+@RequestMapping("/stream")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class StreamController {
+
+    private final ChangeStream changeStream;
+
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes() {
+        return changeStream.subscribe();
+    }
+}
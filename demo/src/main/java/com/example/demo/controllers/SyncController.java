@@ -0,0 +1,54 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.DeltaSyncService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.*;
+
+// Delta versions of /tool/available and /loan/active: start with since=0, then pass back the returned version
+@RestController
+@RequestMapping("/sync")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class SyncController {
+
+    private final DeltaSyncService deltaSync;
+
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    @GetMapping("/tools/available")
+    public ResponseEntity<?> availableTools(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        try {
+            return ResponseEntity.ok(deltaSync.availableTools(since, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    @GetMapping("/loans/active")
+    public ResponseEntity<?> activeLoans(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) String rutUser,
+            @RequestParam(defaultValue = "500") int limit,
+            Authentication auth
+    ) {
+        // same rule as /loan/active: only admins may sync every customer's loans
+        boolean isAdmin = auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_ADMIN"::equalsIgnoreCase);
+        if ((rutUser == null || rutUser.isBlank()) && !isAdmin) {
+            return ResponseEntity.badRequest().body("rutUser is required");
+        }
+        try {
+            return ResponseEntity.ok(deltaSync.activeLoans(since, rutUser, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
 import com.example.demo.entities.UserEntity;
+import com.example.demo.services.ToolImportService;
 import com.example.demo.services.ToolService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -16,7 +22,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ToolController {
 
+    // Catalog version the listing was served from, clients can skip re-rendering when unchanged
+    public static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
+
     private final ToolService toolService;
+    private final ToolImportService toolImportService;
 
     // body = ToolEntity, user via query param
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
@@ -32,7 +42,22 @@ public class ToolController {
         }
     }
 
-    //All types of update (move and edit), all via query params
+    // Supplier spreadsheets: CSV with header name,category,amount,repositionValue[,state]
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> importTools(HttpServletRequest request, @RequestParam String rutUser) {
+        try {
+            UserEntity user = new UserEntity();
+            user.setRut(rutUser);
+            return ResponseEntity.ok(toolImportService.importTools(request.getInputStream(), user));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Could not read import file.");
+        }
+    }
+
+    //All types of update (move and edit), all via query params; state is the label ("Prestada")
     @PreAuthorize("hasAnyRole('ADMIN')")
     @PutMapping("/{id}")
     public ResponseEntity<?> updateTool(@PathVariable Long id,
@@ -43,7 +68,37 @@ public class ToolController {
         try {
             UserEntity user = new UserEntity();
             user.setRut(rutUser);
-            return ResponseEntity.ok(toolService.updateTool(id, state, amount, repositionValue, user));
+            return ResponseEntity.ok(toolService.updateTool(id, ToolState.fromLabel(state), amount, repositionValue, user));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Moves N units of one bucket to another state (one kardex row)
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PutMapping("/{id}/move")
+    public ResponseEntity<?> moveUnits(@PathVariable Long id,
+                                       @RequestParam String state,
+                                       @RequestParam int quantity,
+                                       @RequestParam String rutUser) {
+        try {
+            UserEntity user = new UserEntity();
+            user.setRut(rutUser);
+            return ResponseEntity.ok(toolService.moveUnits(id, ToolState.fromLabel(state), quantity, user));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // body = [{"toolId":1,"state":"En reparación","quantity":40}, ...], applied all or nothing
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping("/moves")
+    public ResponseEntity<?> moveUnitsBatch(@RequestBody List<ToolService.Move> moves,
+                                            @RequestParam String rutUser) {
+        try {
+            UserEntity user = new UserEntity();
+            user.setRut(rutUser);
+            return ResponseEntity.ok(toolService.moveUnits(moves, user));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -51,19 +106,38 @@ public class ToolController {
 
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping("/names-categories")
-    public ResponseEntity<List<ToolService.NameCategory>> listNamesWithCategory() {
-        return ResponseEntity.ok(toolService.getAllNamesWithCategory());
+    public ResponseEntity<List<ToolService.NameCategory>> listNamesWithCategory(WebRequest request) {
+        long version = toolService.catalogVersion();
+        String etag = ETags.of("tools", version);
+        if (request.checkNotModified(etag)) return ETags.notModified(etag);
+        return ETags.ok(etag)
+                .header(CATALOG_VERSION_HEADER, String.valueOf(version))
+                .body(toolService.getAllNamesWithCategory());
     }
 
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping("/available")
-    public ResponseEntity<List<ToolEntity>> listAvailable() {
-        return ResponseEntity.ok(toolService.listAvailable());
+    public ResponseEntity<List<ToolEntity>> listAvailable(WebRequest request) {
+        long version = toolService.catalogVersion();
+        String etag = ETags.of("tools", version);
+        if (request.checkNotModified(etag)) return ETags.notModified(etag);
+        return ETags.ok(etag)
+                .header(CATALOG_VERSION_HEADER, String.valueOf(version))
+                .body(toolService.listAvailable());
     }
 
     @PreAuthorize("hasAnyRole('ADMIN')")
     @GetMapping("/by-state")
-    public ResponseEntity<List<ToolEntity>> listByState(@RequestParam String state) {
-        return ResponseEntity.ok(toolService.listByState(state));
+    public ResponseEntity<?> listByState(@RequestParam String state) {
+        ToolState toolState;
+        try {
+            toolState = ToolState.fromLabel(state);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        long version = toolService.catalogVersion();
+        return ResponseEntity.ok()
+                .header(CATALOG_VERSION_HEADER, String.valueOf(version))
+                .body(toolService.listByState(toolState));
     }
 }
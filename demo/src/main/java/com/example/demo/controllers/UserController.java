@@ -1,13 +1,21 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.UserEntity;
+import com.example.demo.services.CustomerSummaryService;
+import com.example.demo.services.UserImportService;
 import com.example.demo.services.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -16,6 +24,10 @@ public class UserController {
 
     @Autowired
     private UserService userService;
+    @Autowired
+    private UserImportService userImportService;
+    @Autowired
+    private CustomerSummaryService customerSummaryService;
 
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @PostMapping
@@ -28,6 +40,23 @@ public class UserController {
         }
     }
 
+    // Bulk import: CSV with header (email,name,rut,phone,admin) or NDJSON, one user per line
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> importUsers(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        UserImportService.Format format = (contentType != null && contentType.contains("ndjson"))
+                ? UserImportService.Format.NDJSON
+                : UserImportService.Format.CSV;
+        try {
+            return ResponseEntity.ok(userImportService.importUsers(request.getInputStream(), format));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Could not read import file.");
+        }
+    }
+
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping
     public ResponseEntity<List<UserEntity>> getAllUsers() {
@@ -54,6 +83,35 @@ public class UserController {
         return ResponseEntity.ok(user);
     }
 
+    // Open loans, overdue count, unpaid fines/damage and eligibility in one call (replaces debts+active+overdue).
+    // Admins may read anyone's; a user only their own (the token's rut claim).
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    @GetMapping("/{rut}/summary")
+    public ResponseEntity<?> getSummary(@PathVariable String rut, Authentication auth) {
+        boolean isAdmin = auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(a -> a != null && a.equalsIgnoreCase("ROLE_ADMIN"));
+        if (!isAdmin && !isOwnRut(auth, rut)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            CustomerSummaryService.CustomerSummary summary = customerSummaryService.summaryOf(rut);
+            if (summary == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+            }
+            return ResponseEntity.ok(summary);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    private static boolean isOwnRut(Authentication auth, String rut) {
+        if (!(auth instanceof JwtAuthenticationToken token) || rut == null || rut.isBlank()) return false;
+        String claim = token.getToken().getClaimAsString("rut");
+        return claim != null && !claim.isBlank()
+                && UserService.normalizeRut(claim.trim()).equals(UserService.normalizeRut(rut.trim()));
+    }
+
     @PreAuthorize("hasAnyRole('ADMIN')")
     @PatchMapping("/{id}/active")
     public ResponseEntity<?> updateUserActiveStatus(@PathVariable Long id, @RequestParam boolean active) {
@@ -0,0 +1,17 @@
+package com.example.demo.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// One row per aggregate ("TOOLS", "LOANS", "SETTINGS"), bumped after every committed write
+@Entity
+@Table(name = "change_counter")
+@Data @NoArgsConstructor @AllArgsConstructor
+public class ChangeCounterEntity {
+    @Id
+    @Column(length = 32)
+    private String aggregate;
+
+    @Column(nullable = false)
+    private long version;
+}
@@ -1,6 +1,5 @@
 package com.example.demo.entities;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,16 +15,21 @@ import java.time.LocalDate;
 public class KardexEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "kardex_seq")
+    @SequenceGenerator(name = "kardex_seq", sequenceName = "kardex_seq", allocationSize = 50)
     @Column(unique = true, nullable = false)
     private Long id;
 
+    // fetched with the row by KardexRepository.search (entity graph), so it is never serialized as a proxy
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "tool_id", nullable = false)
-    @JsonIgnoreProperties({"hibernateLazyInitializer","handler"})
     private ToolEntity tool;
     private String rutUser;
-    private String type;
+    @Column(name = "type_code")
+    @Convert(converter = MovementTypeConverter.class)
+    private MovementType type;
     private LocalDate movementDate;
     private int stock;
+    // units moved by this movement (bulk moves aggregate several); null on rows written before it existed
+    private Integer quantity;
 }
@@ -1,5 +1,6 @@
 package com.example.demo.entities;
 
+import com.example.demo.config.ChangeSequenceTracker;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -11,14 +12,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "loan")
+@EntityListeners(ChangeSequenceTracker.class)
+@Table(name = "loan", indexes = @Index(name = "idx_loan_rut_user", columnList = "rut_user"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class LoanEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     // Client
@@ -40,6 +43,9 @@ public class LoanEntity {
     private boolean lateFinePaid = false;
     private boolean damagePenaltyPaid = false;
 
+    // Unpaid late fine + unpaid damage, so the debts screen only reads debtor rows (partial index in schema.sql)
+    private Integer outstandingDebt = 0;
+
     //Amount of types of tools in the loan
     private Integer amountOfTools = 0;
 
@@ -49,6 +55,12 @@ public class LoanEntity {
     private List<LoanItemEntity> items = new ArrayList<>();
 
     // Helpers
+    @PrePersist
+    @PreUpdate
+    public void refreshOutstandingDebt() {
+        outstandingDebt = (lateFinePaid ? 0 : lateFine) + (damagePenaltyPaid ? 0 : damagePenalty);
+    }
+
     public void addItem(LoanItemEntity item) {
         items.add(item);
         item.setLoan(this);
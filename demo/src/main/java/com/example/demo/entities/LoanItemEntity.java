@@ -7,6 +7,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Locale;
+
 @Entity
 @Table(
         name = "loan_item",
@@ -18,7 +20,8 @@ import lombok.NoArgsConstructor;
 public class LoanItemEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_item_seq")
+    @SequenceGenerator(name = "loan_item_seq", sequenceName = "loan_item_seq", allocationSize = 50)
     private Long id;
 
 
@@ -35,4 +38,10 @@ public class LoanItemEntity {
 
     private String toolNameSnapshot;
 
+    // Normalized name|category of the rented tool, same for every state bucket of it (see keyOf)
+    private String toolKey;
+
+    public static String keyOf(String name, String category) {
+        return name.trim().toLowerCase(Locale.ROOT) + "|" + category.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,56 @@
+package com.example.demo.entities;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+// Kardex movement, stored as a smallint code (type_code); the label is what the API has always returned
+public enum MovementType {
+    ENTRY(1, "Ingreso", null),
+    TO_AVAILABLE(2, "Cambio de estado: Disponible", ToolState.AVAILABLE),
+    TO_LOANED(3, "Cambio de estado: Prestada", ToolState.LOANED),
+    TO_REPAIR(4, "Cambio de estado: En reparación", ToolState.IN_REPAIR),
+    TO_WRITTEN_OFF(5, "Cambio de estado: Dada de baja", ToolState.WRITTEN_OFF);
+
+    private final short code;
+    private final String label;
+    private final ToolState target;
+
+    MovementType(int code, String label, ToolState target) {
+        this.code = (short) code;
+        this.label = label;
+        this.target = target;
+    }
+
+    public short code() {
+        return code;
+    }
+
+    @JsonValue
+    public String label() {
+        return label;
+    }
+
+    public static MovementType stateChange(ToolState target) {
+        for (MovementType t : values()) {
+            if (target != null && t.target == target) return t;
+        }
+        throw new IllegalArgumentException("No movement type for state: " + target);
+    }
+
+    @JsonCreator
+    public static MovementType fromLabel(String label) {
+        if (label == null) return null;
+        String s = label.trim();
+        for (MovementType t : values()) {
+            if (t.label.equalsIgnoreCase(s) || t.name().equalsIgnoreCase(s)) return t;
+        }
+        throw new IllegalArgumentException("Invalid movement type: " + label);
+    }
+
+    public static MovementType fromCode(short code) {
+        for (MovementType t : values()) {
+            if (t.code == code) return t;
+        }
+        throw new IllegalArgumentException("Unknown movement type code: " + code);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter
+public class MovementTypeConverter implements AttributeConverter<MovementType, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(MovementType type) {
+        return type == null ? null : type.code();
+    }
+
+    @Override
+    public MovementType convertToEntityAttribute(Short code) {
+        return code == null ? null : MovementType.fromCode(code);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One row per item of a loan that is not returned yet; the unique key is the "already renting this tool" check
+@Entity
+@Table(
+        name = "open_rental",
+        uniqueConstraints = @UniqueConstraint(name = "ux_open_rental_user_tool", columnNames = {"rut_user", "tool_key"}),
+        indexes = @Index(name = "idx_open_rental_loan", columnList = "loan_id")
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpenRentalEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "open_rental_seq")
+    @SequenceGenerator(name = "open_rental_seq", sequenceName = "open_rental_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String rutUser;
+    @Column(nullable = false)
+    private String toolKey;
+    @Column(nullable = false)
+    private Long loanId;
+}
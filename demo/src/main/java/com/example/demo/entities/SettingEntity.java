@@ -1,9 +1,15 @@
 package com.example.demo.entities;
 
+import com.example.demo.config.CacheInvalidationPublisher;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "setting")
+@EntityListeners(CacheInvalidationPublisher.class)
 @Table(name = "app_setting")
 @Data @NoArgsConstructor @AllArgsConstructor
 public class SettingEntity {
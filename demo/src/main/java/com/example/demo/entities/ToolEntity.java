@@ -1,12 +1,19 @@
 package com.example.demo.entities;
 
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tool")
+@EntityListeners({CacheInvalidationPublisher.class, ChangeSequenceTracker.class})
 @Table(name = "tool")
 @Data
 @NoArgsConstructor
@@ -14,13 +21,17 @@ import jakarta.persistence.*;
 public class ToolEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled sequence (50 ids per round trip) so Hibernate can batch the inserts; kept ahead of old ids in schema.sql
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tool_seq")
+    @SequenceGenerator(name = "tool_seq", sequenceName = "tool_seq", allocationSize = 50)
     @Column(unique = true, nullable = false)
     private Long id;
 
     private String name;
     private String category;
-    private String initialState;
+    @Column(name = "state_code")
+    @Convert(converter = ToolStateConverter.class)
+    private ToolState initialState;
     private int repositionValue;
     private boolean available;
     private int amount; //Stock
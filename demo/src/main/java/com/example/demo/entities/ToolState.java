@@ -0,0 +1,73 @@
+package com.example.demo.entities;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * State of a tool bucket. Stored as a smallint code (state_code), exposed through the API with its Spanish label.
+ * The allowed moves between states are defined here and nowhere else.
+ */
+public enum ToolState {
+    AVAILABLE(1, "Disponible"),
+    LOANED(2, "Prestada"),
+    IN_REPAIR(3, "En reparación"),
+    WRITTEN_OFF(4, "Dada de baja");
+
+    private static final Map<ToolState, Set<ToolState>> TRANSITIONS = new EnumMap<>(ToolState.class);
+
+    static {
+        TRANSITIONS.put(AVAILABLE, EnumSet.of(LOANED, IN_REPAIR, WRITTEN_OFF));
+        TRANSITIONS.put(LOANED, EnumSet.of(AVAILABLE, IN_REPAIR, WRITTEN_OFF));
+        TRANSITIONS.put(IN_REPAIR, EnumSet.of(AVAILABLE, WRITTEN_OFF));
+        TRANSITIONS.put(WRITTEN_OFF, EnumSet.noneOf(ToolState.class)); // written off units never come back
+    }
+
+    private final short code;
+    private final String label;
+
+    ToolState(int code, String label) {
+        this.code = (short) code;
+        this.label = label;
+    }
+
+    public short code() {
+        return code;
+    }
+
+    @JsonValue
+    public String label() {
+        return label;
+    }
+
+    public boolean canMoveTo(ToolState target) {
+        return TRANSITIONS.get(this).contains(target);
+    }
+
+    public void checkMoveTo(ToolState target) {
+        if (!canMoveTo(target))
+            throw new IllegalArgumentException("Cannot move tools from '" + label + "' to '" + target.label + "'.");
+    }
+
+    // Label as used by the API ("En reparación"), case-insensitive; the constant name is accepted too
+    @JsonCreator
+    public static ToolState fromLabel(String label) {
+        if (label == null) return null;
+        String s = label.trim();
+        for (ToolState st : values()) {
+            if (st.label.equalsIgnoreCase(s) || st.name().equalsIgnoreCase(s)) return st;
+        }
+        throw new IllegalArgumentException("Invalid state: " + label);
+    }
+
+    public static ToolState fromCode(short code) {
+        for (ToolState st : values()) {
+            if (st.code == code) return st;
+        }
+        throw new IllegalArgumentException("Unknown tool state code: " + code);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter
+public class ToolStateConverter implements AttributeConverter<ToolState, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(ToolState state) {
+        return state == null ? null : state.code();
+    }
+
+    @Override
+    public ToolState convertToEntityAttribute(Short code) {
+        return code == null ? null : ToolState.fromCode(code);
+    }
+}
@@ -1,11 +1,21 @@
 package com.example.demo.entities;
 
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@EntityListeners({CacheInvalidationPublisher.class, ChangeSequenceTracker.class})
+// only changed columns are written, so saving a loaded user never puts back a stale amount_of_loans
+@DynamicUpdate
 @Table(
         name = "client",
         uniqueConstraints = {
@@ -1,6 +1,7 @@
 package com.example.demo.repositories;
 
 import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
@@ -18,7 +19,7 @@ public interface KardexRepository extends JpaRepository<KardexEntity, Long> {
   from KardexEntity k
   where (:toolId is null or k.tool.id = :toolId)
     and (:rutUser is null or k.rutUser = :rutUser)
-    and (:typeLower = '' or lower(k.type) = :typeLower)
+    and (:type is null or k.type = :type)
     and (:hasFrom = false or k.movementDate >= :fromDate)
     and (:hasTo   = false or k.movementDate <= :toDate)
     and (:namePat = '' or lower(k.tool.name) like :namePat)
@@ -27,7 +28,7 @@ public interface KardexRepository extends JpaRepository<KardexEntity, Long> {
     Page<KardexEntity> search(
             @Param("toolId") Long toolId,
             @Param("rutUser") String rutUser,
-            @Param("typeLower") String typeLower,     // "" if doesn't filter by type
+            @Param("type") MovementType type,         // null if doesn't filter by type
             @Param("hasFrom") boolean hasFrom,        // true if start != null
             @Param("fromDate") LocalDate fromDate,    // can be null
             @Param("hasTo") boolean hasTo,            // true if end != null
@@ -15,7 +15,6 @@ import java.util.Optional;
 
 public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
 
-    long countByRutUserAndLateReturnDateIsNull(String rutUser);
 
     @EntityGraph(attributePaths = {"items", "items.tool"})
     List<LoanEntity> findByLateReturnDateIsNull();
@@ -23,49 +22,38 @@ public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
     @EntityGraph(attributePaths = {"items", "items.tool"})
     List<LoanEntity> findByRutUserAndLateReturnDateIsNull(String rutUser);
 
-    @EntityGraph(attributePaths = {"items", "items.tool"})
-    Page<LoanEntity> findPageByRutUser(String rutUser, Pageable pageable);
-
-    @EntityGraph(attributePaths = {"items", "items.tool"})
-    Page<LoanEntity> findByLateReturnDateIsNullAndReturnDateBefore(LocalDate today, Pageable pageable);
-
-    @EntityGraph(attributePaths = {"items", "items.tool"})
-    Page<LoanEntity> findByRutUserAndLateReturnDateIsNullAndReturnDateBefore(
-            String rutUser, LocalDate today, Pageable pageable);
+    // Paged listings select ids only: a page cannot be cut in SQL over a fetched collection, so the loans of
+    // the page are loaded afterwards with findByIdIn (see LoanService.loadPage)
+    @Query("select l.id from LoanEntity l where l.rutUser = :rut")
+    Page<Long> findIdsByRutUser(@Param("rut") String rutUser, Pageable pageable);
 
-    boolean existsByRutUserAndReturnDateBeforeAndLateReturnDateIsNull(String rutUser, LocalDate today);
-    boolean existsByRutUserAndLateFineGreaterThanAndLateFinePaidIsFalse(String rutUser, int min);
-    boolean existsByRutUserAndDamagePenaltyGreaterThanAndDamagePenaltyPaidIsFalse(String rutUser, int min);
+    @Query("""
+      select l.id
+      from LoanEntity l
+      where l.lateReturnDate is null
+        and l.returnDate < :today
+        and (:rut is null or l.rutUser = :rut)
+    """)
+    Page<Long> findOverdueIds(@Param("rut") String rutUser, @Param("today") LocalDate today, Pageable pageable);
 
+    // Whatever makes a customer inactive (overdue open loan, unpaid late fine, unpaid damage) in one query
     @Query("""
-      select case when count(li)>0 then true else false end
+      select case when count(l) > 0 then true else false end
       from LoanEntity l
-      join l.items li
       where l.rutUser = :rut
-        and l.lateReturnDate is null
-        and li.tool.id in :toolIds
+        and ((l.lateReturnDate is null and l.returnDate < :today) or l.outstandingDebt > 0)
     """)
-    boolean existsActiveWithAnyToolId(
-            @Param("rut") String rutUser,
-            @Param("toolIds") Collection<Long> toolIds
-    );
+    boolean hasBlockingLoans(@Param("rut") String rutUser, @Param("today") LocalDate today);
 
-
-    @EntityGraph(attributePaths = {"items","items.tool"})
     @Query("""
-  select l
+  select l.id
   from LoanEntity l
-  where
-    (
-      (l.lateFine > 0 and (l.lateFinePaid = false or l.lateFinePaid is null))
-      or
-      (l.damagePenalty > 0 and (l.damagePenaltyPaid = false or l.damagePenaltyPaid is null))
-    )
+  where l.outstandingDebt > 0
     and (:rut is null or l.rutUser = :rut)
     and (:hasStart = false or l.reservationDate >= :start)
     and (:hasEnd   = false or l.reservationDate <= :end)
 """)
-    Page<LoanEntity> findLoansWithUnpaidDebts(
+    Page<Long> findIdsWithUnpaidDebts(
             @Param("rut") String rutUser,
             @Param("hasStart") boolean hasStart,
             @Param("start") LocalDate start,
@@ -79,7 +67,39 @@ public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
 
 
 
+    // Dashboard loan figures in one round trip; each subquery is served by a partial index (open loans, debtors)
+    @Query(value = """
+      select (select count(*) from loan where late_return_date is null) as "openLoans",
+             (select count(*) from loan where late_return_date is null and return_date < :today) as "overdueLoans",
+             (select count(*) from loan where outstanding_debt > 0) as "loansWithDebt",
+             (select count(distinct rut_user) from loan where outstanding_debt > 0) as "customersWithDebt",
+             (select coalesce(sum(outstanding_debt), 0) from loan where outstanding_debt > 0) as "outstandingDebt"
+    """, nativeQuery = true)
+    LoanTotals loanTotals(@Param("today") LocalDate today);
+
+    interface LoanTotals {
+        long getOpenLoans();
+        long getOverdueLoans();
+        long getLoansWithDebt();
+        long getCustomersWithDebt();
+        long getOutstandingDebt();
+    }
+
+    // [id, rutUser] of open loans due in [from, to): the ones that became overdue between two checks
+    @Query("""
+      select l.id, l.rutUser
+      from LoanEntity l
+      where l.lateReturnDate is null
+        and l.returnDate >= :from
+        and l.returnDate < :to
+    """)
+    List<Object[]> findOpenWithReturnDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
     @Override
     @EntityGraph(attributePaths = {"items", "items.tool"})
     Optional<LoanEntity> findById(Long id);
+
+    // Bulk return/payment: all requested loans with their items in one query
+    @EntityGraph(attributePaths = {"items", "items.tool"})
+    List<LoanEntity> findByIdIn(Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.demo.repositories;
+
+import com.example.demo.entities.OpenRentalEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OpenRentalRepository extends JpaRepository<OpenRentalEntity, Long> {
+
+    // Which of these tool keys the user is renting right now (single probe of ux_open_rental_user_tool)
+    @Query("select r.toolKey from OpenRentalEntity r where r.rutUser = :rut and r.toolKey in :keys")
+    List<String> findRentedKeys(@Param("rut") String rutUser, @Param("keys") Collection<String> toolKeys);
+
+    @Modifying
+    @Query("delete from OpenRentalEntity r where r.loanId = :loanId")
+    int deleteByLoanId(@Param("loanId") Long loanId);
+
+    @Modifying
+    @Query("delete from OpenRentalEntity r where r.loanId in :loanIds")
+    int deleteByLoanIdIn(@Param("loanIds") Collection<Long> loanIds);
+}
@@ -0,0 +1,21 @@
+package com.example.demo.repositories;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+
+import java.util.Collection;
+
+// Bucket lookups by the normalized (name, category, state code) key backed by ux_tool_bucket_code (schema.sql)
+public interface ToolBucketRepository {
+
+    // Row-locked bucket for the key, created empty (amount 0) when missing. Concurrent callers end up on the same row.
+    ToolEntity lockBucket(String name, String category, ToolState state, int repositionValue);
+
+    // Creates the missing buckets of `buckets` (transient rows: name, category, state, reposition value) empty, in
+    // one multi-row insert; keys that already exist are skipped. Callers lock them afterwards by name.
+    void insertMissingBuckets(Collection<ToolEntity> buckets);
+
+    // For a move between buckets: row-locks `source` and the bucket of the same tool in `state` (created empty when
+    // missing) in id order, so two opposite moves cannot deadlock, and reloads both. Returns the target bucket.
+    ToolEntity lockMove(ToolEntity source, ToolState state);
+}
@@ -0,0 +1,128 @@
+package com.example.demo.repositories;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.query.NativeQuery;
+
+import java.util.Collection;
+import java.util.List;
+
+class ToolBucketRepositoryImpl implements ToolBucketRepository {
+
+    // Same expressions as the ux_tool_bucket_code index, otherwise PostgreSQL cannot use it
+    static final String BUCKET_KEY = "lower(btrim(name)), lower(btrim(category)), state_code";
+    static final String MATCHES_KEY = """
+        lower(btrim(name)) = lower(btrim(:name))
+          and lower(btrim(category)) = lower(btrim(:category))
+          and state_code = :state
+    """;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public ToolEntity lockBucket(String name, String category, ToolState state, int repositionValue) {
+        ToolEntity bucket = findForUpdate(name, category, state);
+        if (bucket != null) return bucket;
+
+        insertEmpty(name, category, state, repositionValue);
+        bucket = findForUpdate(name, category, state);
+        if (bucket == null) throw new IllegalStateException("Bucket not found after insert: " + name + "/" + category + "/" + state.label());
+        return bucket;
+    }
+
+    @Override
+    public void insertMissingBuckets(Collection<ToolEntity> buckets) {
+        if (buckets.isEmpty()) return;
+        StringBuilder sql = new StringBuilder(
+                "insert into tool (id, name, category, state_code, reposition_value, available, amount) values ");
+        int i = 0;
+        for (ToolEntity ignored : buckets) {
+            if (i > 0) sql.append(", ");
+            sql.append("(nextval('tool_seq'), btrim(:name").append(i).append("), btrim(:category").append(i)
+                    .append("), :state").append(i).append(", :repositionValue").append(i)
+                    .append(", :available").append(i).append(", 0)");
+            i++;
+        }
+        sql.append(" on conflict (").append(BUCKET_KEY).append(") do nothing");
+
+        Query query = em.createNativeQuery(sql.toString());
+        i = 0;
+        for (ToolEntity b : buckets) {
+            query.setParameter("name" + i, b.getName())
+                    .setParameter("category" + i, b.getCategory())
+                    .setParameter("state" + i, b.getInitialState().code())
+                    .setParameter("repositionValue" + i, b.getRepositionValue())
+                    .setParameter("available" + i, b.getInitialState() == ToolState.AVAILABLE);
+            i++;
+        }
+        query.unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(ToolEntity.class)
+                .executeUpdate();
+    }
+
+    @Override
+    public ToolEntity lockMove(ToolEntity source, ToolState state) {
+        em.flush(); // earlier moves of this session must reach the rows before they are reloaded below
+        Long targetId = findId(source.getName(), source.getCategory(), state);
+        if (targetId == null) {
+            insertEmpty(source.getName(), source.getCategory(), state, source.getRepositionValue());
+            targetId = findId(source.getName(), source.getCategory(), state);
+            if (targetId == null) throw new IllegalStateException("Bucket not found after insert: "
+                    + source.getName() + "/" + source.getCategory() + "/" + state.label());
+        }
+
+        // Locked in id order, whichever is source and which target
+        @SuppressWarnings("unchecked")
+        List<ToolEntity> rows = em.createNativeQuery(
+                        "select * from tool where id in (:ids) order by id for update", ToolEntity.class)
+                .setParameter("ids", List.of(source.getId(), targetId))
+                .getResultList();
+        ToolEntity target = null;
+        for (ToolEntity row : rows) {
+            em.refresh(row); // an instance this session already held keeps the amount read before the lock otherwise
+            if (row.getId().equals(targetId)) target = row;
+        }
+        if (target == null || rows.size() < 2) throw new IllegalArgumentException("Tool not found (id=" + source.getId() + ")");
+        return target;
+    }
+
+    // A writer racing us on the same key makes this a no-op; both then lock the one row
+    private void insertEmpty(String name, String category, ToolState state, int repositionValue) {
+        em.createNativeQuery("""
+                insert into tool (id, name, category, state_code, reposition_value, available, amount)
+                values (nextval('tool_seq'), btrim(:name), btrim(:category), :state, :repositionValue, :available, 0)
+                on conflict (""" + BUCKET_KEY + ") do nothing")
+                .setParameter("name", name)
+                .setParameter("category", category)
+                .setParameter("state", state.code())
+                .setParameter("repositionValue", repositionValue)
+                .setParameter("available", state == ToolState.AVAILABLE)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(ToolEntity.class) // only the tool cache region is invalidated
+                .executeUpdate();
+    }
+
+    private Long findId(String name, String category, ToolState state) {
+        List<?> ids = em.createNativeQuery("select id from tool where " + MATCHES_KEY, Long.class)
+                .setParameter("name", name)
+                .setParameter("category", category)
+                .setParameter("state", state.code())
+                .getResultList();
+        return ids.isEmpty() ? null : ((Number) ids.get(0)).longValue();
+    }
+
+    private ToolEntity findForUpdate(String name, String category, ToolState state) {
+        @SuppressWarnings("unchecked")
+        List<ToolEntity> rows = em.createNativeQuery(
+                        "select * from tool where " + MATCHES_KEY + " for update", ToolEntity.class)
+                .setParameter("name", name)
+                .setParameter("category", category)
+                .setParameter("state", state.code())
+                .getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
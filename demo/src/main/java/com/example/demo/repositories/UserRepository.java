@@ -1,13 +1,70 @@
 package com.example.demo.repositories;
 
 import com.example.demo.entities.UserEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
+    // Natural-key lookups go through the query cache (rows themselves come from the entity region)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     UserEntity findByRut(String rut);
-    UserEntity findByEmail(String email);
+    // same case-insensitive match as the unique index, so a login adopts an imported user whatever the case
+    @Query("select u from UserEntity u where lower(u.email) = lower(:email)")
+    UserEntity findByEmail(@Param("email") String email);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<UserEntity> findByKeycloakId(String keycloakId);
 
+    // Set-based duplicate checks for bulk import (one query per chunk); emails compare lowercased (ux_client_email_lower)
+    @Query("select lower(u.email) from UserEntity u where lower(u.email) in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select u.rut from UserEntity u where u.rut in :ruts")
+    List<String> findExistingRuts(@Param("ruts") Collection<String> ruts);
+
+    // Active-loan counter, changed in place so parallel loans of the same user never lose an update.
+    // The increment also enforces the limit: 0 rows means the user already has `max` active loans.
+    @Modifying
+    @Query("update UserEntity u set u.amountOfLoans = u.amountOfLoans + 1 where u.rut = :rut and u.amountOfLoans < :max")
+    int incrementLoansBelow(@Param("rut") String rut, @Param("max") int max);
+
+    @Modifying
+    @Query("""
+      update UserEntity u set u.amountOfLoans = case when u.amountOfLoans > :n then u.amountOfLoans - :n else 0 end
+      where u.rut = :rut and u.amountOfLoans > 0
+    """)
+    int decrementLoans(@Param("rut") String rut, @Param("n") int count);
+
+    // Standing of one customer in a single round trip (CustomerSummaryService); empty if the RUT is unknown
+    @Query(value = """
+      select c.rut as "rut", c.name as "name",
+             count(l.id) filter (where l.late_return_date is null) as "openLoans",
+             count(l.id) filter (where l.late_return_date is null and l.return_date < :today) as "overdueLoans",
+             coalesce(sum(case when l.late_fine_paid then 0 else l.late_fine end), 0) as "unpaidLateFines",
+             coalesce(sum(case when l.damage_penalty_paid then 0 else l.damage_penalty end), 0) as "unpaidDamage"
+      from client c
+      left join loan l on l.rut_user = c.rut
+      where c.rut = :rut
+      group by c.id, c.rut, c.name
+    """, nativeQuery = true)
+    Optional<SummaryRow> summarize(@Param("rut") String rut, @Param("today") LocalDate today);
+
+    interface SummaryRow {
+        String getRut();
+        String getName();
+        long getOpenLoans();
+        long getOverdueLoans();
+        long getUnpaidLateFines();
+        long getUnpaidDamage();
+    }
+
 }
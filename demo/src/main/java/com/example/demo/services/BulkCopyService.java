@@ -0,0 +1,247 @@
+package com.example.demo.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk dump/load of kardex, loan and loan_item rows as gzip streams, bypassing JPA.
+ * On PostgreSQL it uses COPY (CSV with header, or binary); on any other database (H2 in tests) it falls back to a
+ * streamed SELECT / batched INSERT with the same CSV layout. Memory use does not depend on the number of rows.
+ */
+@Slf4j
+@Service
+public class BulkCopyService {
+
+    static final int BATCH_SIZE = 1000;
+    static final int FETCH_SIZE = 1000;
+
+    public enum Format { CSV, BINARY }
+
+    // Column lists are fixed so a dump from one environment always loads into another
+    public enum Table {
+        KARDEX("kardex", "kardex_seq",
+                List.of("id", "tool_id", "rut_user", "type_code", "movement_date", "stock", "quantity")),
+        LOAN("loan", "loan_seq",
+                List.of("id", "rut_user", "reservation_date", "return_date", "late_return_date", "total",
+                        "late_fine", "damage_penalty", "late_fine_paid", "damage_penalty_paid", "amount_of_tools")),
+        LOAN_ITEM("loan_item", "loan_item_seq",
+                List.of("id", "loan_id", "tool_id", "tool_name_snapshot", "tool_key"));
+
+        final String table;
+        final String sequence;
+        final List<String> columns;
+
+        Table(String table, String sequence, List<String> columns) {
+            this.table = table;
+            this.sequence = sequence;
+            this.columns = columns;
+        }
+
+        public static Table of(String name) {
+            for (Table t : values()) {
+                if (t.table.equalsIgnoreCase(name) || t.name().equalsIgnoreCase(name)) return t;
+            }
+            throw new IllegalArgumentException("Unknown table: " + name);
+        }
+
+        String columnList() {
+            return String.join(", ", columns);
+        }
+    }
+
+    private final DataSource dataSource;
+    private final ChangeCounterService changeCounters;
+
+    public BulkCopyService(DataSource dataSource, ChangeCounterService changeCounters) {
+        this.dataSource = dataSource;
+        this.changeCounters = changeCounters;
+    }
+
+    // Writes the gzip dump to `out`; returns the number of rows
+    public long export(Table table, Format format, OutputStream out) throws IOException {
+        try (Connection conn = dataSource.getConnection();
+             GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(out, 1 << 16))) {
+            long rows;
+            if (conn.isWrapperFor(PGConnection.class)) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    noStatementTimeout(conn);
+                    CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+                    rows = copy.copyOut("COPY (select " + table.columnList() + " from " + table.table + " order by id)"
+                            + " TO STDOUT WITH (" + options(format) + ")", gzip);
+                    conn.commit();
+                } catch (SQLException | IOException | RuntimeException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            } else {
+                requireCsv(format);
+                rows = selectAsCsv(conn, table, gzip);
+            }
+            gzip.finish();
+            return rows;
+        } catch (SQLException ex) {
+            throw new IOException("Export of " + table.table + " failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    // Loads a gzip dump in one transaction; loans must be loaded before their items (foreign keys)
+    public long load(Table table, Format format, InputStream in) throws IOException {
+        long rows;
+        try (Connection conn = dataSource.getConnection();
+             InputStream gzip = new GZIPInputStream(new BufferedInputStream(in, 1 << 16))) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (conn.isWrapperFor(PGConnection.class)) {
+                    noStatementTimeout(conn);
+                    CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+                    rows = copy.copyIn("COPY " + table.table + " (" + table.columnList() + ") FROM STDIN WITH ("
+                            + options(format) + ")", gzip);
+                    afterPostgresLoad(conn, table);
+                } else {
+                    requireCsv(format);
+                    rows = insertFromCsv(conn, table, gzip);
+                }
+                conn.commit();
+            } catch (SQLException | IOException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Load of " + table.table + " failed: " + ex.getMessage(), ex);
+        }
+        if (table != Table.KARDEX) changeCounters.markChanged(ChangeCounterService.Aggregate.LOANS);
+        return rows;
+    }
+
+    //Helpers
+
+    // A whole-table COPY can outlast the pool's statement_timeout; lifted for this transaction only
+    private static void noStatementTimeout(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("set local statement_timeout = 0");
+        }
+    }
+
+    private static String options(Format format) {
+        return format == Format.BINARY ? "FORMAT binary" : "FORMAT csv, HEADER true";
+    }
+
+    private static void requireCsv(Format format) {
+        if (format != Format.CSV) throw new IllegalArgumentException("Binary format needs PostgreSQL COPY.");
+    }
+
+    // Ids come from the dump: keep the pooled sequence ahead of them, and let loans get a change_seq stamp
+    private static void afterPostgresLoad(Connection conn, Table table) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            // nextval only moves forward, so ids handed out meanwhile by other nodes are never reused (see schema.sql)
+            st.execute("select max(nextval('" + table.sequence + "')) from generate_series(1, ("
+                    + " select ceil((m.max_id - s.last_value) / p.increment_by::numeric)::int"
+                    + " + (case when s.is_called then 0 else 1 end)"
+                    + " from " + table.sequence + " s, pg_sequences p,"
+                    + " (select coalesce(max(id), 0) as max_id from " + table.table + ") m"
+                    + " where p.schemaname = current_schema() and p.sequencename = '" + table.sequence + "'))");
+            if (table == Table.LOAN) {
+                // not part of the dump, derived from the fine columns like LoanEntity.refreshOutstandingDebt
+                st.execute("update loan set outstanding_debt = (case when late_fine_paid then 0 else late_fine end)"
+                        + " + (case when damage_penalty_paid then 0 else damage_penalty end) where outstanding_debt is null");
+                st.execute("select pg_advisory_xact_lock(1129530707)"); // ChangeSequenceTracker.LOCK_KEYS loan
+                st.execute("update loan set change_seq = nextval('change_seq') where change_seq is null");
+            }
+            if (table == Table.LOAN_ITEM) {
+                // loaded items of open loans must block a second rental of the same tool (see schema.sql)
+                st.execute("""
+                    insert into open_rental (id, rut_user, tool_key, loan_id)
+                    select nextval('open_rental_seq'), x.rut_user, x.tool_key, x.loan_id
+                    from (select distinct on (l.rut_user, li.tool_key) l.rut_user, li.tool_key, l.id as loan_id
+                          from loan l join loan_item li on li.loan_id = l.id
+                          where l.late_return_date is null and li.tool_key is not null
+                            and not exists (select 1 from open_rental r
+                                            where r.rut_user = l.rut_user and r.tool_key = li.tool_key)
+                          order by l.rut_user, li.tool_key, l.id) x
+                    on conflict do nothing""");
+            }
+        }
+    }
+
+    private static long selectAsCsv(Connection conn, Table table, OutputStream out) throws SQLException, IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        w.write(String.join(",", table.columns));
+        w.write('\n');
+        long rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "select " + table.columnList() + " from " + table.table + " order by id")) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                int n = table.columns.size();
+                while (rs.next()) {
+                    for (int i = 1; i <= n; i++) {
+                        if (i > 1) w.write(',');
+                        w.write(csvValue(rs.getObject(i)));
+                    }
+                    w.write('\n');
+                    rows++;
+                }
+            }
+        }
+        w.flush();
+        return rows;
+    }
+
+    private static long insertFromCsv(Connection conn, Table table, InputStream in) throws SQLException, IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String header = reader.readLine(); // same layout as the export, the header is informative only
+        if (header == null) return 0;
+
+        String placeholders = String.join(", ", java.util.Collections.nCopies(table.columns.size(), "?"));
+        long rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "insert into " + table.table + " (" + table.columnList() + ") values (" + placeholders + ")")) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                List<String> cols = ImportSupport.splitCsv(line);
+                if (cols.size() != table.columns.size())
+                    throw new IllegalArgumentException("Line " + (rows + 2) + ": expected "
+                            + table.columns.size() + " columns, got " + cols.size());
+                for (int i = 0; i < cols.size(); i++) {
+                    String v = cols.get(i);
+                    if (v.isEmpty()) ps.setNull(i + 1, Types.NULL);
+                    else ps.setString(i + 1, v);
+                }
+                ps.addBatch();
+                if (++rows % BATCH_SIZE == 0) ps.executeBatch();
+            }
+            if (rows % BATCH_SIZE != 0) ps.executeBatch();
+        }
+        return rows;
+    }
+
+    // COPY csv conventions: empty = NULL, quote when needed, booleans as t/f
+    static String csvValue(Object v) {
+        if (v == null) return "";
+        if (v instanceof Boolean b) return b ? "t" : "f";
+        String s = v.toString();
+        if (s.isEmpty()) return "\"\"";
+        if (s.indexOf(',') >= 0 || s.indexOf(';') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class CacheStatsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // Hits/misses per second-level cache region plus the query cache, with hit ratios
+    public Map<String, Object> secondLevelCacheStats() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<Map<String, Object>> regions = new ArrayList<>();
+        for (String region : stats.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics r = stats.getCacheRegionStatistics(region);
+            if (r == null) continue;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("region", region);
+            m.put("hits", r.getHitCount());
+            m.put("misses", r.getMissCount());
+            m.put("puts", r.getPutCount());
+            m.put("elementsInMemory", r.getElementCountInMemory());
+            m.put("hitRatio", hitRatio(r.getHitCount(), r.getMissCount()));
+            regions.add(m);
+        }
+
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("hits", stats.getQueryCacheHitCount());
+        query.put("misses", stats.getQueryCacheMissCount());
+        query.put("puts", stats.getQueryCachePutCount());
+        query.put("hitRatio", hitRatio(stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount()));
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("statisticsEnabled", stats.isStatisticsEnabled());
+        out.put("regions", regions);
+        out.put("queryCache", query);
+        return out;
+    }
+
+    static double hitRatio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.demo.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-aggregate change counters stored in the change_counter table. Every committed write to tools, loans or
+ * settings bumps its counter once, so a counter value identifies a version of that data and controllers can use
+ * it as an ETag without running the real query. Values are cached and re-read at most every
+ * {@code app.change-counters.refresh-millis} so writes made by other replicas are picked up too.
+ */
+@Slf4j
+@Service
+public class ChangeCounterService {
+
+    public enum Aggregate { TOOLS, LOANS, SETTINGS }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final long refreshMillis;
+
+    private final Map<Aggregate, Long> cached = new ConcurrentHashMap<>();
+    private volatile long refreshedAt;
+
+    public ChangeCounterService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.change-counters.refresh-millis:1000}") long refreshMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.refreshMillis = refreshMillis;
+    }
+
+    public long current(Aggregate aggregate) {
+        if (System.currentTimeMillis() - refreshedAt > refreshMillis) refresh();
+        return cached.getOrDefault(aggregate, 0L);
+    }
+
+    // Table is created by Hibernate, rows are added here the first time the app starts against a database
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        for (Aggregate a : Aggregate.values()) {
+            try {
+                jdbcTemplate.update("""
+                    insert into change_counter (aggregate, version)
+                    select ?, 0 where not exists (select 1 from change_counter where aggregate = ?)
+                """, a.name(), a.name());
+            } catch (DataAccessException ex) {
+                // another replica seeded it at the same time
+                log.debug("Change counter {} already seeded: {}", a, ex.getMessage());
+            }
+        }
+    }
+
+    // Run synchronously on publish (before the catalog's after-commit listener) and only mark the transaction
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onToolsChanged(ToolsChangedEvent event) {
+        markChanged(Aggregate.TOOLS);
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onLoansChanged(LoansChangedEvent event) {
+        markChanged(Aggregate.LOANS);
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onSettingsChanged(SettingsChangedEvent event) {
+        markChanged(Aggregate.SETTINGS);
+    }
+
+    // Bumps once per transaction and aggregate, after commit; a rolled back write never changes the ETag
+    @SuppressWarnings("unchecked")
+    public void markChanged(Aggregate aggregate) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(aggregate);
+            return;
+        }
+        Set<Aggregate> pending = (Set<Aggregate>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Aggregate> changed = EnumSet.noneOf(Aggregate.class);
+            TransactionSynchronizationManager.bindResource(this, changed);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+
+                @Override
+                public void afterCommit() {
+                    changed.forEach(ChangeCounterService.this::bump);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeCounterService.this);
+                }
+            });
+            pending = changed;
+        }
+        pending.add(aggregate);
+    }
+
+    long bump(Aggregate aggregate) {
+        try {
+            Long version = requiresNew.execute(status -> {
+                jdbcTemplate.update("update change_counter set version = version + 1 where aggregate = ?",
+                        aggregate.name());
+                return jdbcTemplate.queryForObject("select version from change_counter where aggregate = ?",
+                        Long.class, aggregate.name());
+            });
+            if (version != null) cached.merge(aggregate, version, Math::max);
+            return version == null ? 0L : version;
+        } catch (DataAccessException ex) {
+            // the write itself is committed; clients just keep their copy until the next change
+            log.warn("Could not bump change counter {}: {}", aggregate, ex.getMessage());
+            return cached.getOrDefault(aggregate, 0L);
+        }
+    }
+
+    //Helpers
+
+    // Counters only move forward: an older read never overwrites a newer local bump
+    private void refresh() {
+        jdbcTemplate.query("select aggregate, version from change_counter", (RowCallbackHandler) rs -> {
+            try {
+                cached.merge(Aggregate.valueOf(rs.getString(1)), rs.getLong(2), Math::max);
+            } catch (IllegalArgumentException ignored) {
+                // unknown row, not ours
+            }
+        });
+        refreshedAt = System.currentTimeMillis();
+    }
+}
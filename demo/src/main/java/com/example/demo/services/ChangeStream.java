@@ -0,0 +1,169 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of committed tool and loan changes to Server-Sent Events subscribers.
+ * Publishing only appends to each subscriber's bounded queue; a small shared pool does the socket writes,
+ * so a slow client never blocks the writer or the other clients. When a queue overflows its oldest events
+ * are dropped and the client gets a single "resync" event telling it to reload the REST listings.
+ * Each replica streams the changes made through itself.
+ */
+@Slf4j
+@Component
+public class ChangeStream {
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService senders;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    public ChangeStream(@Value("${app.stream.buffer-size:256}") int bufferSize,
+                        @Value("${app.stream.sender-threads:2}") int senderThreads,
+                        @Value("${app.stream.timeout-millis:1800000}") long timeoutMillis) {
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "sse-sender");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public SseEmitter subscribe() {
+        // EventSource reconnects by itself once the timeout closes the stream
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber s = new Subscriber(emitter);
+        subscribers.add(s);
+        emitter.onCompletion(() -> subscribers.remove(s));
+        emitter.onTimeout(() -> subscribers.remove(s));
+        emitter.onError(ex -> subscribers.remove(s));
+        s.offer(new StreamEvent(sequence.get(), "hello", Map.of("version", sequence.get())));
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public void publish(String type, Object data) {
+        if (subscribers.isEmpty()) return;
+        StreamEvent event = new StreamEvent(sequence.incrementAndGet(), type, data);
+        for (Subscriber s : subscribers) s.offer(event);
+    }
+
+    // Committed stock movements: only what a list needs to patch its rows
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onToolsChanged(ToolsChangedEvent event) {
+        List<Map<String, Object>> tools = new ArrayList<>();
+        for (ToolEntity t : event.tools()) {
+            tools.add(Map.of(
+                    "id", t.getId(),
+                    "state", t.getInitialState() == null ? "" : t.getInitialState().label(),
+                    "amount", t.getAmount()));
+        }
+        publish("tools", tools);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoansChanged(LoansChangedEvent event) {
+        publish("loan", Map.of(
+                "id", event.loanId(),
+                "rutUser", String.valueOf(event.rutUser()),
+                "kind", event.kind().name()));
+    }
+
+    // Keeps proxies from closing idle streams and finds dead connections
+    @Scheduled(fixedRateString = "${app.stream.heartbeat-millis:25000}")
+    public void heartbeat() {
+        for (Subscriber s : subscribers) s.offer(StreamEvent.HEARTBEAT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    //Helpers
+
+    record StreamEvent(long id, String type, Object data) {
+        static final StreamEvent HEARTBEAT = new StreamEvent(0, null, null);
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<StreamEvent> queue = new ArrayDeque<>();
+        private boolean overflowed;
+        private boolean scheduled;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(StreamEvent event) {
+            synchronized (this) {
+                if (queue.size() >= bufferSize) {
+                    queue.pollFirst();
+                    overflowed = true;
+                }
+                queue.addLast(event);
+                if (scheduled) return;
+                scheduled = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        // Only one drain per subscriber runs at a time (the "scheduled" flag), so events keep their order
+        private void drain() {
+            while (true) {
+                StreamEvent event;
+                boolean resync;
+                synchronized (this) {
+                    resync = overflowed;
+                    overflowed = false;
+                    if (resync) queue.clear(); // the reload covers whatever was still queued
+                    event = resync ? null : queue.pollFirst();
+                    if (!resync && event == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    if (resync) {
+                        emitter.send(SseEmitter.event().id(String.valueOf(sequence.get())).name("resync").data(Map.of()));
+                    } else if (event.type() == null) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    } else {
+                        emitter.send(SseEmitter.event().id(String.valueOf(event.id())).name(event.type()).data(event.data()));
+                    }
+                } catch (IOException | IllegalStateException ex) {
+                    // client went away; completion callbacks remove it
+                    log.debug("Dropping SSE subscriber: {}", ex.getMessage());
+                    subscribers.remove(this);
+                    emitter.completeWithError(ex);
+                    synchronized (this) {
+                        queue.clear();
+                        scheduled = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
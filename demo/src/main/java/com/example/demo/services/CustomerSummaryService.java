@@ -0,0 +1,76 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+// Customer standing (open, overdue, unpaid amounts, eligibility) from one aggregate query, cached per RUT.
+// Evicted after commit of that customer's loan events; the TTL covers writes made on other replicas.
+@Service
+public class CustomerSummaryService {
+
+    static final int MAX_ACTIVE_LOANS = 5;
+
+    private final UserRepository userRepository;
+    private final Cache<String, CustomerSummary> cache;
+
+    public CustomerSummaryService(UserRepository userRepository,
+                                  @Value("${app.summary.cache-ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    // null when there is no customer with this RUT (not cached)
+    public CustomerSummary summaryOf(String rutUser) {
+        if (rutUser == null || rutUser.isBlank()) throw new IllegalArgumentException("rut is required");
+        return cache.get(UserService.normalizeRut(rutUser.trim()), this::load);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoansChanged(LoansChangedEvent event) {
+        if (event.rutUser() != null) cache.invalidate(UserService.normalizeRut(event.rutUser()));
+    }
+
+    // Writes that touch many customers at once (nightly fine accrual)
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private CustomerSummary load(String rut) {
+        return userRepository.summarize(rut, LocalDate.now())
+                .map(r -> {
+                    long debt = r.getUnpaidLateFines() + r.getUnpaidDamage();
+                    // same rule as UserService.recomputeActiveStatus / LoanService.createLoan
+                    boolean active = r.getOverdueLoans() == 0 && debt == 0;
+                    return new CustomerSummary(r.getRut(), r.getName(), r.getOpenLoans(), r.getOverdueLoans(),
+                            r.getUnpaidLateFines(), r.getUnpaidDamage(), debt, active,
+                            active && r.getOpenLoans() < MAX_ACTIVE_LOANS);
+                })
+                .orElse(null);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class CustomerSummary {
+        private String rut;
+        private String name;
+        private long openLoans;
+        private long overdueLoans;
+        private long unpaidLateFines;
+        private long unpaidDamage;
+        private long totalDebt;
+        private boolean active;
+        private boolean canBorrow;
+    }
+}
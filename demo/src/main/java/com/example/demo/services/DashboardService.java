@@ -0,0 +1,87 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.repositories.LoanItemRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Admin home figures: one aggregate query for loans, one grouped query for the ranking, stock from the tool
+// catalog snapshot. Kept for a few seconds; concurrent refreshes wait for the single computation in flight.
+@Service
+public class DashboardService {
+
+    static final int TOP_TOOLS = 5;
+
+    private final LoanRepository loanRepository;
+    private final LoanItemRepository loanItemRepository;
+    private final ToolCatalog toolCatalog;
+    private final LoadingCache<String, Dashboard> cache;
+
+    public DashboardService(LoanRepository loanRepository,
+                            LoanItemRepository loanItemRepository,
+                            ToolCatalog toolCatalog,
+                            @Value("${app.dashboard.cache-ttl-millis:5000}") long ttlMillis) {
+        this.loanRepository = loanRepository;
+        this.loanItemRepository = loanItemRepository;
+        this.toolCatalog = toolCatalog;
+        // a single key: Caffeine runs one load at a time per key and hands its result to every waiting caller
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build(key -> compute());
+    }
+
+    public Dashboard current() {
+        return cache.get("dashboard");
+    }
+
+    Dashboard compute() {
+        LoanRepository.LoanTotals totals = loanRepository.loanTotals(LocalDate.now());
+
+        Map<String, Long> stock = new LinkedHashMap<>();
+        ToolCatalog.Snapshot snapshot = toolCatalog.current();
+        for (ToolState state : ToolState.values()) {
+            long units = 0;
+            for (ToolEntity t : snapshot.byState(state)) units += t.getAmount();
+            stock.put(state.label(), units);
+        }
+
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (Object[] r : loanItemRepository.topByToolName(false, null, false, null, PageRequest.of(0, TOP_TOOLS))) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("tool", r[0]);
+            m.put("times", ((Number) r[1]).longValue());
+            top.add(m);
+        }
+
+        return new Dashboard(totals.getOpenLoans(), totals.getOverdueLoans(), totals.getLoansWithDebt(),
+                totals.getCustomersWithDebt(), totals.getOutstandingDebt(), stock, top, Instant.now());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Dashboard {
+        private long openLoans;
+        private long overdueLoans;
+        private long loansWithDebt;
+        private long customersWithDebt;
+        private long outstandingDebt;
+        private Map<String, Long> stockByState;
+        private List<Map<String, Object>> topTools;
+        private Instant computedAt;
+    }
+}
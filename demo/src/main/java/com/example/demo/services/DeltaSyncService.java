@@ -0,0 +1,123 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolState;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * "What changed since version N" for the available tools and active loans listings. Versions are values of the
+ * change_seq column stamped by ChangeSequenceTracker; a changed row that no longer belongs to the listing
+ * (tool without stock, returned loan) is reported as deleted.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeltaSyncService {
+
+    static final int MAX_LIMIT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Delta<AvailableTool> availableTools(long since, int limit) {
+        int size = checkArgs(since, limit);
+        List<Change<AvailableTool>> rows = jdbcTemplate.query("""
+            select id, name, category, state_code, amount, reposition_value, change_seq
+            from tool
+            where change_seq > ?
+            order by change_seq
+            limit ?
+        """, (rs, i) -> new Change<>(
+                rs.getLong("change_seq"),
+                rs.getLong("id"),
+                // same rule as ToolCatalog: "Disponible" buckets with stock
+                rs.getShort("state_code") == ToolState.AVAILABLE.code() && rs.getInt("amount") > 0,
+                new AvailableTool(
+                        rs.getLong("id"),
+                        rs.getString("name"),
+                        rs.getString("category"),
+                        rs.getInt("amount"),
+                        rs.getInt("reposition_value"))
+        ), since, size);
+        return toDelta(since, size, rows);
+    }
+
+    public Delta<ActiveLoan> activeLoans(long since, String rutUser, int limit) {
+        int size = checkArgs(since, limit);
+        String rut = (rutUser == null || rutUser.isBlank()) ? null : rutUser;
+        List<Change<ActiveLoan>> rows = jdbcTemplate.query("""
+            select id, rut_user, reservation_date, return_date, late_return_date, total, change_seq
+            from loan
+            where change_seq > ?
+              and (cast(? as varchar) is null or rut_user = ?)
+            order by change_seq
+            limit ?
+        """, (rs, i) -> new Change<>(
+                rs.getLong("change_seq"),
+                rs.getLong("id"),
+                rs.getDate("late_return_date") == null,
+                new ActiveLoan(
+                        rs.getLong("id"),
+                        rs.getString("rut_user"),
+                        toLocalDate(rs.getDate("reservation_date")),
+                        toLocalDate(rs.getDate("return_date")),
+                        rs.getInt("total"),
+                        new ArrayList<>())
+        ), since, rut, rut, size);
+
+        Delta<ActiveLoan> delta = toDelta(since, size, rows);
+        fillToolIds(delta.upserted());
+        return delta;
+    }
+
+    //Helpers
+
+    static <T> Delta<T> toDelta(long since, int limit, List<Change<T>> rows) {
+        long version = since;
+        List<T> upserted = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (Change<T> c : rows) {
+            version = Math.max(version, c.seq());
+            if (c.matches()) upserted.add(c.payload());
+            else deleted.add(c.id());
+        }
+        return new Delta<>(version, rows.size() >= limit, upserted, deleted);
+    }
+
+    // One query for the items of every loan in the page
+    private void fillToolIds(List<ActiveLoan> loans) {
+        if (loans.isEmpty()) return;
+        Map<Long, ActiveLoan> byId = new HashMap<>();
+        for (ActiveLoan l : loans) byId.put(l.id(), l);
+        jdbcTemplate.query("select loan_id, tool_id from loan_item where loan_id = any(?) order by id",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", byId.keySet().toArray())),
+                (RowCallbackHandler) rs -> byId.get(rs.getLong("loan_id")).toolIds().add(rs.getLong("tool_id")));
+    }
+
+    private static int checkArgs(long since, int limit) {
+        if (since < 0) throw new IllegalArgumentException("since must be >= 0");
+        if (limit <= 0) throw new IllegalArgumentException("limit must be >= 1");
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    private static LocalDate toLocalDate(java.sql.Date d) {
+        return d == null ? null : d.toLocalDate();
+    }
+
+    record Change<T>(long seq, Long id, boolean matches, T payload) {
+    }
+
+    // version = cursor for the next call; hasMore = call again right away with it
+    public record Delta<T>(long version, boolean hasMore, List<T> upserted, List<Long> deleted) {
+    }
+
+    public record AvailableTool(Long id, String name, String category, int amount, int repositionValue) {
+    }
+
+    public record ActiveLoan(Long id, String rutUser, LocalDate reservationDate, LocalDate returnDate,
+                             int total, List<Long> toolIds) {
+    }
+}
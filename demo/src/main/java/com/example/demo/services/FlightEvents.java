@@ -0,0 +1,80 @@
+package com.example.demo.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the loan and stock hot paths, to line business operations up with GC, lock
+ * and I/O events in a recording (see {@link FlightRecordingService}). With no recording running, begin/commit
+ * are close to free, and callers only fill the fields when {@code shouldCommit()} says the event is wanted.
+ */
+public final class FlightEvents {
+
+    private FlightEvents() {}
+
+    @Name("tingeso.LoanCreated")
+    @Label("Loan Created")
+    @Category({"Tingeso", "Loans"})
+    @Description("A loan created by LoanService.createLoan; the duration covers the whole call")
+    @StackTrace(false)
+    public static class LoanCreated extends Event {
+        @Label("Loan Id")
+        long loanId;
+
+        @Label("Customer RUT")
+        String rutUser;
+
+        @Label("Items")
+        int items;
+    }
+
+    @Name("tingeso.StockMoved")
+    @Label("Stock Moved")
+    @Category({"Tingeso", "Tools"})
+    @Description("Units moved from one state bucket to another")
+    @StackTrace(false)
+    public static class StockMoved extends Event {
+        @Label("Bucket Id")
+        long toolId;
+
+        @Label("Tool")
+        String tool;
+
+        @Label("From State")
+        String fromState;
+
+        @Label("To State")
+        String toState;
+
+        @Label("Quantity")
+        int quantity;
+
+        @Label("Lock Wait")
+        @Description("Time spent locking (or creating) the target bucket row")
+        @Timespan(Timespan.NANOSECONDS)
+        long lockWait;
+    }
+
+    @Name("tingeso.KardexWritten")
+    @Label("Kardex Written")
+    @Category({"Tingeso", "Tools"})
+    @StackTrace(false)
+    public static class KardexWritten extends Event {
+        @Label("Bucket Id")
+        long toolId;
+
+        @Label("Movement")
+        String movement;
+
+        @Label("Quantity")
+        int quantity;
+
+        @Label("Stock After")
+        int stock;
+    }
+}
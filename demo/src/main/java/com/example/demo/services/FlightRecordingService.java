@@ -0,0 +1,91 @@
+package com.example.demo.services;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+// One on-demand JFR recording per node (start / stop / dump from /admin/recording)
+@Service
+public class FlightRecordingService {
+
+    static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(30);
+
+    private Recording recording;
+
+    // settings: a JDK configuration name, "default" (about 1% overhead) or "profile" (more detail, about 2%)
+    public synchronized RecordingStatus start(String settings, Duration maxAge) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING)
+            throw new IllegalArgumentException("A recording is already running.");
+        String name = (settings == null || settings.isBlank()) ? "default" : settings.trim();
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(name);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings: " + name);
+        }
+        if (maxAge != null && (maxAge.isNegative() || maxAge.isZero()))
+            throw new IllegalArgumentException("maxAge must be positive.");
+
+        if (recording != null) recording.close();
+        Recording r = new Recording(configuration);
+        r.setName("tingeso-" + name);
+        r.setToDisk(true);
+        r.setMaxAge(maxAge == null ? DEFAULT_MAX_AGE : maxAge);
+        r.enable(FlightEvents.LoanCreated.class);
+        r.enable(FlightEvents.StockMoved.class);
+        r.enable(FlightEvents.KardexWritten.class);
+        r.start();
+        recording = r;
+        return statusOf(r);
+    }
+
+    // Stops it but keeps the data, so it can still be dumped
+    public synchronized RecordingStatus stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING)
+            throw new IllegalArgumentException("No recording is running.");
+        recording.stop();
+        return statusOf(recording);
+    }
+
+    // Writes what has been recorded so far (running or stopped) to a temp file the caller must delete
+    public synchronized Path dump() {
+        if (recording == null || recording.getState() == RecordingState.CLOSED)
+            throw new IllegalArgumentException("There is no recording to dump.");
+        try {
+            Path file = Files.createTempFile("tingeso-", ".jfr");
+            recording.dump(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized RecordingStatus status() {
+        return recording == null ? new RecordingStatus(null, "NONE", null, null, null) : statusOf(recording);
+    }
+
+    private static RecordingStatus statusOf(Recording r) {
+        return new RecordingStatus(r.getName(), r.getState().name(), r.getStartTime(), r.getStopTime(), r.getMaxAge());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RecordingStatus {
+        private String name;
+        private String state;
+        private Instant startedAt;
+        private Instant stoppedAt;
+        private Duration maxAge;
+    }
+}
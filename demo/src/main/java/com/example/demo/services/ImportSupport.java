@@ -0,0 +1,57 @@
+package com.example.demo.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Shared by the file imports (users, tools, bulk copy): CSV line splitting and the per-row report
+public final class ImportSupport {
+
+    private ImportSupport() {
+    }
+
+    // Accepts ',' or ';' (Excel exports) and double-quoted values
+    static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if ((c == ',' || c == ';') && !quoted) {
+                out.add(cur.toString().trim());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString().trim());
+        return out;
+    }
+
+    @Data
+    public static class ImportReport {
+        private int total;
+        private int inserted;
+        private List<RowError> errors = new ArrayList<>();
+
+        void addError(int line, String message) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private int line;
+        private String message;
+    }
+}
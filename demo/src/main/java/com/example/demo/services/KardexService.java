@@ -1,11 +1,14 @@
 package com.example.demo.services;
 
 import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
 import com.example.demo.repositories.KardexRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 
@@ -14,13 +17,22 @@ import java.time.LocalDate;
 public class KardexService {
     private final KardexRepository kardexRepository;
 
+    @Timed(value = "kardex.search", histogram = true)
+    @Transactional(readOnly = true)
     public Page<KardexEntity> search(
             Long toolId, String rutUser, String type,
             LocalDate start, LocalDate end,
             String name, String category,
             Pageable pageable
     ) {
-        String typeLower   = (type == null || type.isBlank()) ? "" : type.toLowerCase();
+        MovementType movementType = null;
+        if (type != null && !type.isBlank()) {
+            try {
+                movementType = MovementType.fromLabel(type);
+            } catch (IllegalArgumentException ex) {
+                return Page.empty(pageable); // unknown type matches no movement
+            }
+        }
         String namePat     = (name == null || name.isBlank()) ? "" : "%" + name.toLowerCase() + "%";
         String categoryPat = (category == null || category.isBlank()) ? "" : "%" + category.toLowerCase() + "%";
 
@@ -28,7 +40,7 @@ public class KardexService {
         boolean hasTo   = (end   != null);
 
         return kardexRepository.search(
-                toolId, rutUser, typeLower,
+                toolId, rutUser, movementType,
                 hasFrom, start,
                 hasTo,   end,
                 namePat, categoryPat,
@@ -0,0 +1,158 @@
+package com.example.demo.services;
+
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
+import com.example.demo.entities.UserEntity;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+// Late fines of loans still out, accrued every night from the configured daily rate (SettingService).
+// Runs on one node only (session advisory lock) and walks the open overdue loans by id in short transactions.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LateFineAccrualJob {
+
+    // pg_try_advisory_lock key, only used here
+    static final long LOCK_KEY = 0x46494E45L;
+
+    static final int CHUNK_SIZE = 1000;
+
+    // One round trip per chunk: the fine is recomputed (not added) from the days late, so reruns and missed nights
+    // converge to the same amount. Fines are only paid once a loan is returned, so an open loan's fine is unpaid.
+    // Owners of the chunk's loans are overdue, hence inactive.
+    static final String CHUNK_SQL = """
+        with p as (
+            select cast(? as date) as today, cast(? as integer) as rate
+        ), chunk as (
+            select l.id from loan l, p
+            where l.late_return_date is null and l.return_date < p.today and l.id > ?
+            order by l.id
+            limit ?
+        ), accrued as (
+            update loan l set late_fine = (p.today - l.return_date) * p.rate, late_fine_paid = false,
+                              outstanding_debt = (p.today - l.return_date) * p.rate
+                                               + case when l.damage_penalty_paid then 0 else l.damage_penalty end,
+                              change_seq = null
+            from chunk, p
+            where l.id = chunk.id
+              and (l.late_fine <> (p.today - l.return_date) * p.rate or l.late_fine_paid)
+            returning l.id
+        ), blocked as (
+            update client c set active = false, change_seq = null
+            where c.active
+              and c.rut in (select l.rut_user from loan l join chunk on chunk.id = l.id)
+            returning c.id
+        )
+        select (select max(id) from chunk), (select count(*) from accrued), (select count(*) from blocked)
+    """;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final SettingService settingService;
+    private final ChangeSequenceTracker changeSequence;
+    private final ChangeCounterService changeCounters;
+    private final CacheInvalidationPublisher cacheInvalidation;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CustomerSummaryService customerSummaries;
+
+    @Scheduled(cron = "${app.fines.accrual-cron:0 15 0 * * *}")
+    public void accrueNightly() {
+        int rate = settingService.getDailyFineRate();
+        if (rate <= 0) {
+            log.debug("Daily fine rate is 0, late fine accrual skipped");
+            return;
+        }
+        try (Connection lockConn = dataSource.getConnection()) {
+            if (!lockConn.isWrapperFor(PGConnection.class)) {
+                log.info("Datasource is not PostgreSQL, late fine accrual disabled");
+                return;
+            }
+            if (!tryLock(lockConn)) {
+                log.debug("Late fine accrual already running on another node");
+                return;
+            }
+            try {
+                accrue(LocalDate.now(), rate);
+            } finally {
+                unlock(lockConn);
+            }
+        } catch (SQLException ex) {
+            log.warn("Late fine accrual failed", ex);
+        }
+    }
+
+    // Returns the number of loans whose fine changed
+    long accrue(LocalDate today, int rate) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long afterId = 0, accrued = 0, blocked = 0;
+        while (true) {
+            long after = afterId;
+            Chunk chunk = tx.execute(status -> {
+                Chunk c = jdbcTemplate.queryForObject(CHUNK_SQL, (rs, n) -> new Chunk(
+                        rs.getObject(1, Long.class), rs.getInt(2), rs.getInt(3)),
+                        Date.valueOf(today), rate, after, CHUNK_SIZE);
+                if (c != null && c.accrued > 0) changeSequence.markChanged(ChangeSequenceTracker.LOAN, List.of());
+                if (c != null && c.blocked > 0) changeSequence.markChanged(ChangeSequenceTracker.CLIENT, List.of());
+                return c;
+            });
+            if (chunk == null || chunk.lastId == null) break;
+            afterId = chunk.lastId;
+            accrued += chunk.accrued;
+            blocked += chunk.blocked;
+        }
+
+        if (accrued > 0) {
+            changeCounters.markChanged(ChangeCounterService.Aggregate.LOANS);
+            customerSummaries.invalidateAll();
+        }
+        if (blocked > 0) {
+            // client rows were written behind Hibernate's back
+            Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+            cache.evictEntityData(UserEntity.class);
+            cache.evictQueryRegions();
+            cacheInvalidation.publishAfterCommit("user:*");
+        }
+        log.info("Late fines accrued on {} loans at {} per day, {} customers blocked", accrued, rate, blocked);
+        return accrued;
+    }
+
+    //Helpers
+
+    private static boolean tryLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("select pg_try_advisory_lock(?)")) {
+            ps.setLong(1, LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("select pg_advisory_unlock(?)")) {
+            ps.setLong(1, LOCK_KEY);
+            ps.execute();
+        }
+    }
+
+    private record Chunk(Long lastId, int accrued, int blocked) {}
+}
@@ -1,14 +1,28 @@
 package com.example.demo.services;
 
+import com.example.demo.config.RoutingDataSource;
 import com.example.demo.entities.LoanEntity;
 import com.example.demo.entities.LoanItemEntity;
+import com.example.demo.entities.OpenRentalEntity;
 import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
 import com.example.demo.entities.UserEntity;
+import com.example.demo.repositories.LoanItemRepository;
 import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.OpenRentalRepository;
 import com.example.demo.repositories.ToolRepository;
 import com.example.demo.repositories.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,21 +36,31 @@ import java.util.*;
 public class LoanService {
 
     private final LoanRepository loanRepository;
+    private final LoanItemRepository loanItemRepository;
+    private final OpenRentalRepository openRentalRepository;
     private final ToolRepository toolRepository;
     private final UserRepository userRepository;
     private final ToolService toolService;
     private final UserService userService;
     private final SettingService settingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeCounterService changeCounters;
 
     private static final int DAILY_RENT_PRICE = 2500;
+    private static final int MAX_ACTIVE_LOANS = 5;
+    private static final int MAX_BULK_LOANS = 500;
 
     @Transactional
+    @Timed(value = "loan.create", histogram = true)
     public LoanEntity createLoan(
             String rutUser,
             LocalDate reservationDate,
             LocalDate returnDate,
             List<Item> items
     ) {
+        FlightEvents.LoanCreated created = new FlightEvents.LoanCreated();
+        created.begin();
+        Timer.Sample phase = Timer.start();
         if (reservationDate == null || returnDate == null)
             throw new IllegalArgumentException("Reservation and return dates are required.");
         if (returnDate.isBefore(reservationDate))
@@ -46,18 +70,17 @@ public class LoanService {
 
         UserEntity customer = userRepository.findByRut(rutUser);
         if (customer == null) throw new IllegalArgumentException("User (rut) not found: " + rutUser);
+        phase = nextPhase(phase, "validation");
 
-        //  Blocked due to overdue payments/unpaid fines
-        userService.recomputeActiveStatus(rutUser);
-        UserEntity refreshed = userRepository.findByRut(rutUser);
-        if (refreshed != null && !refreshed.isActive()) {
+        //  Blocked due to overdue payments/unpaid fines (checked from the loans, the flag is refreshed at commit)
+        if (userService.hasBlockingLoans(rutUser)) {
             throw new IllegalArgumentException("User is inactive due to overdue loans or unpaid fines.");
         }
 
-        // Max 5 active loans
-        long activeCount = loanRepository.countByRutUserAndLateReturnDateIsNull(rutUser);
-        if (activeCount >= 5)
+        // Max 5 active loans: checked and counted by the same update (rolled back if the loan fails below)
+        if (!userService.takeLoanSlot(customer, MAX_ACTIVE_LOANS))
             throw new IllegalArgumentException("User already has 5 active loans.");
+        phase = nextPhase(phase, "eligibility");
 
         LoanEntity loan = new LoanEntity();
         loan.setRutUser(customer.getRut());
@@ -75,6 +98,7 @@ public class LoanService {
         kardexUser.setRut(customer.getRut());
 
         Set<Long> seen = new HashSet<>();
+        Map<String, ToolEntity> byKey = new LinkedHashMap<>(); // tool key -> "Disponible" bucket
         for (Item it : items) {
             if (it == null || it.toolId == null)
                 throw new IllegalArgumentException("Each item requires 'toolId'.");
@@ -91,51 +115,74 @@ public class LoanService {
             ToolEntity disponibleTool = toolRepository.findById(it.toolId)
                     .orElseThrow(() -> new IllegalArgumentException("Tool not found (id=" + it.toolId + ")"));
 
-            if (!"Disponible".equalsIgnoreCase(disponibleTool.getInitialState()))
+            if (disponibleTool.getInitialState() != ToolState.AVAILABLE)
                 throw new IllegalArgumentException("Tool id=" + it.toolId + " is not 'Disponible'.");
             if (disponibleTool.getAmount() < qty)
                 throw new IllegalArgumentException("Not enough stock for tool id=" + it.toolId +
                         ". Available: " + disponibleTool.getAmount());
 
-            //Validation of "same tool already rented by the same user"
-            // Search for tool IDs in "Prestada" status with the same name and category
-            List<Long> prestadaIds = toolRepository.findIdsByNameCategoryAndState(
-                    disponibleTool.getName(), disponibleTool.getCategory(), "Prestada");
-
-            if (!prestadaIds.isEmpty()) {
-                boolean alreadyActive = loanRepository.existsActiveWithAnyToolId(rutUser, prestadaIds);
-                if (alreadyActive) {
-                    throw new IllegalArgumentException(
-                            "El usuario ya tiene un préstamo activo de esta herramienta (" +
-                                    disponibleTool.getName() + " - " + disponibleTool.getCategory() + ")."
-                    );
-                }
-            }
-
+            String key = LoanItemEntity.keyOf(disponibleTool.getName(), disponibleTool.getCategory());
+            if (byKey.putIfAbsent(key, disponibleTool) != null)
+                throw new IllegalArgumentException("Tool repeated in the same loan: " + it.toolId);
+        }
+        phase = nextPhase(phase, "items");
+
+        //Validation of "same tool already rented by the same user": one index probe for the whole loan
+        List<String> rented = openRentalRepository.findRentedKeys(rutUser, byKey.keySet());
+        if (!rented.isEmpty()) {
+            ToolEntity tool = byKey.get(rented.get(0));
+            throw new IllegalArgumentException(
+                    "El usuario ya tiene un préstamo activo de esta herramienta (" +
+                            tool.getName() + " - " + tool.getCategory() + ")."
+            );
+        }
+        phase = nextPhase(phase, "rental-check");
 
+        for (Map.Entry<String, ToolEntity> entry : byKey.entrySet()) {
             // Move Disponible -> Prestada y get in the bucket in "Prestada"
             ToolEntity prestadaTool =
-                    toolService.updateTool(it.toolId, "Prestada", null, null, kardexUser);
+                    toolService.updateTool(entry.getValue().getId(), ToolState.LOANED, null, null, kardexUser);
 
             // Save the id of "Prestada" in loan_item
             LoanItemEntity line = new LoanItemEntity();
             line.setTool(prestadaTool);
             line.setToolNameSnapshot(prestadaTool.getName());
+            line.setToolKey(entry.getKey());
             loan.addItem(line);
         }
+        phase = nextPhase(phase, "stock-move");
 
         LoanEntity saved = loanRepository.save(loan);
 
+        // The unique (rut_user, tool_key) key also catches a concurrent loan of the same tool
+        List<OpenRentalEntity> rentals = new ArrayList<>();
+        for (String key : byKey.keySet()) {
+            rentals.add(new OpenRentalEntity(null, rutUser, key, saved.getId()));
+        }
+        try {
+            // the loan's only flush: bucket, kardex, loan and rental writes go out in one batch, and the
+            // rental key is checked here
+            openRentalRepository.saveAllAndFlush(rentals);
+        } catch (DataIntegrityViolationException ex) {
+            throw new IllegalArgumentException("El usuario ya tiene un préstamo activo de esta herramienta.");
+        }
+        nextPhase(phase, "persist");
+        if (created.shouldCommit()) {
+            created.loanId = saved.getId();
+            created.rutUser = rutUser;
+            created.items = byKey.size();
+            created.commit();
+        }
 
-        //Active loan counter +1 and recalculate "active"
-        customer.setAmountOfLoans(customer.getAmountOfLoans() + 1);
-        userRepository.save(customer);
-        userService.recomputeActiveStatus(rutUser);
+        //Recalculate "active" (once, before commit)
+        userService.markStatusDirty(rutUser);
 
+        eventPublisher.publishEvent(new LoansChangedEvent(rutUser, saved.getId(), LoansChangedEvent.Kind.CREATED));
         return saved;
     }
 
     @Transactional
+    @Timed(value = "loan.return", histogram = true)
     public LoanEntity returnLoan(
             Long loanId,
             LocalDate actualReturnDate,
@@ -148,6 +195,176 @@ public class LoanService {
 
         LoanEntity loan = loanRepository.findById(loanId)
                 .orElseThrow(() -> new IllegalArgumentException("Loan not found: " + loanId));
+        ReturnPlan plan = planReturn(loan, damagedToolIds, irreparableToolIds, repairCosts);
+
+        // kardex
+        UserEntity kardexUser = new UserEntity();
+        kardexUser.setRut(loan.getRutUser());
+        for (Map.Entry<Long, ToolState> target : plan.targets.entrySet()) {
+            toolService.updateTool(target.getKey(), target.getValue(), null, null, kardexUser);
+        }
+
+        closeLoan(loan, actualReturnDate, finePerDay, plan.damagePenalty);
+        LoanEntity saved = loanRepository.save(loan);
+        openRentalRepository.deleteByLoanId(saved.getId());
+
+        UserEntity customer = userRepository.findByRut(loan.getRutUser());
+        if (customer != null) userService.releaseLoanSlots(customer, 1);
+        userService.markStatusDirty(loan.getRutUser());
+
+        eventPublisher.publishEvent(new LoansChangedEvent(loan.getRutUser(), saved.getId(), LoansChangedEvent.Kind.RETURNED));
+        return saved;
+    }
+
+    // Closing-time returns in one transaction. Each loan is checked on its own and reported; the accepted ones
+    // share one moveUnits call per customer (one kardex row per bucket and state), one open-rental delete,
+    // and one counter update and status recompute per customer. A loan is only closed and reported ok once its
+    // customer's move went through; a rejected move (e.g. stock changed meanwhile) fails that customer's loans.
+    @Transactional
+    @Timed(value = "loan.return.bulk", histogram = true)
+    public List<BulkResult> returnLoans(List<ReturnRequest> requests) {
+        checkBulkSize(requests);
+        Map<Long, LoanEntity> loans = loadLoans(requests.stream().map(r -> r == null ? null : r.loanId).toList());
+
+        List<BulkResult> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        Map<String, List<Integer>> accepted = new LinkedHashMap<>(); // request positions per customer
+        Map<Integer, ReturnPlan> plans = new HashMap<>();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReturnRequest r = requests.get(i);
+            Long loanId = (r == null) ? null : r.loanId;
+            try {
+                LoanEntity loan = bulkTarget(loans, loanId, seen);
+                if (r.actualReturnDate == null) throw new IllegalArgumentException("actualReturnDate is required.");
+                plans.put(i, planReturn(loan, r.damaged, r.irreparable, r.damagedCosts));
+                accepted.computeIfAbsent(loan.getRutUser(), k -> new ArrayList<>()).add(i);
+            } catch (IllegalArgumentException ex) {
+                results.set(i, BulkResult.failed(loanId, ex.getMessage()));
+            }
+        }
+
+        List<LoanEntity> closed = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> e : accepted.entrySet()) {
+            List<ToolService.Move> moves = new ArrayList<>();
+            for (int i : e.getValue()) {
+                plans.get(i).targets.forEach((toolId, state) -> {
+                    ToolService.Move move = new ToolService.Move();
+                    move.toolId = toolId;
+                    move.state = state;
+                    move.quantity = 1;
+                    moves.add(move);
+                });
+            }
+            try {
+                if (!moves.isEmpty()) {
+                    UserEntity kardexUser = new UserEntity();
+                    kardexUser.setRut(e.getKey());
+                    toolService.moveUnits(moves, kardexUser);
+                }
+            } catch (IllegalArgumentException ex) {
+                // moveUnits checks everything before changing a bucket, so nothing of this customer was written
+                for (int i : e.getValue()) results.set(i, BulkResult.failed(requests.get(i).loanId, ex.getMessage()));
+                continue;
+            }
+            for (int i : e.getValue()) {
+                ReturnRequest r = requests.get(i);
+                LoanEntity loan = loans.get(r.loanId);
+                closeLoan(loan, r.actualReturnDate, r.finePerDay, plans.get(i).damagePenalty);
+                closed.add(loan);
+                results.set(i, BulkResult.ok(loan));
+            }
+        }
+        if (closed.isEmpty()) return results;
+
+        loanRepository.saveAll(closed);
+        openRentalRepository.deleteByLoanIdIn(closed.stream().map(LoanEntity::getId).toList());
+
+        Map<String, Integer> closedByRut = new LinkedHashMap<>();
+        for (LoanEntity loan : closed) closedByRut.merge(loan.getRutUser(), 1, Integer::sum);
+        for (Map.Entry<String, Integer> e : closedByRut.entrySet()) {
+            UserEntity customer = userRepository.findByRut(e.getKey());
+            if (customer != null) userService.releaseLoanSlots(customer, e.getValue());
+            userService.markStatusDirty(e.getKey());
+        }
+
+        for (LoanEntity loan : closed) {
+            eventPublisher.publishEvent(new LoansChangedEvent(loan.getRutUser(), loan.getId(), LoansChangedEvent.Kind.RETURNED));
+        }
+        return results;
+    }
+
+    @Transactional
+    @Timed(value = "loan.pay-fines", histogram = true)
+    public LoanEntity payFines(Long loanId, boolean payLateFine, boolean payDamagePenalty) {
+        LoanEntity loan = loanRepository.findById(loanId)
+                .orElseThrow(() -> new IllegalArgumentException("Loan not found: " + loanId));
+        checkReturned(loan);
+
+        if (payLateFine && loan.getLateFine() > 0) {
+            loan.setLateFinePaid(true);
+        }
+        if (payDamagePenalty && loan.getDamagePenalty() > 0) {
+            loan.setDamagePenaltyPaid(true);
+        }
+        loan.refreshOutstandingDebt();
+
+        LoanEntity saved = loanRepository.save(loan);
+
+        // Recalculate 'active'
+        userService.markStatusDirty(loan.getRutUser());
+
+        eventPublisher.publishEvent(new LoansChangedEvent(loan.getRutUser(), saved.getId(), LoansChangedEvent.Kind.FINES_PAID));
+        return saved;
+    }
+
+    // Several payments at once: loans loaded in one query, status recomputed once per customer at commit
+    @Transactional
+    @Timed(value = "loan.pay-fines.bulk", histogram = true)
+    public List<BulkResult> payFines(List<FinePayment> payments) {
+        checkBulkSize(payments);
+        Map<Long, LoanEntity> loans = loadLoans(payments.stream().map(p -> p == null ? null : p.loanId).toList());
+
+        List<BulkResult> results = new ArrayList<>();
+        List<LoanEntity> paid = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (FinePayment p : payments) {
+            Long loanId = (p == null) ? null : p.loanId;
+            try {
+                LoanEntity loan = bulkTarget(loans, loanId, seen);
+                checkReturned(loan);
+                if (p.payLateFine && loan.getLateFine() > 0) loan.setLateFinePaid(true);
+                if (p.payDamagePenalty && loan.getDamagePenalty() > 0) loan.setDamagePenaltyPaid(true);
+                loan.refreshOutstandingDebt();
+                paid.add(loan);
+                results.add(BulkResult.ok(loan));
+            } catch (IllegalArgumentException ex) {
+                results.add(BulkResult.failed(loanId, ex.getMessage()));
+            }
+        }
+        if (paid.isEmpty()) return results;
+
+        loanRepository.saveAll(paid);
+        for (LoanEntity loan : paid) userService.markStatusDirty(loan.getRutUser());
+
+        for (LoanEntity loan : paid) {
+            eventPublisher.publishEvent(new LoansChangedEvent(loan.getRutUser(), loan.getId(), LoansChangedEvent.Kind.FINES_PAID));
+        }
+        return results;
+    }
+
+    //Helpers
+
+    // Closes the current createLoan sub-step (loan.create.phase{phase=...}) and starts timing the next one
+    private static Timer.Sample nextPhase(Timer.Sample sample, String name) {
+        sample.stop(Metrics.timer("loan.create.phase", "phase", name));
+        return Timer.start();
+    }
+
+    // Checks a return without writing anything: the state each tool goes to and the damage penalty
+    private ReturnPlan planReturn(LoanEntity loan,
+                                  Set<Long> damagedToolIds,
+                                  Set<Long> irreparableToolIds,
+                                  Map<Long, Integer> repairCosts) {
         if (loan.getLateReturnDate() != null)
             throw new IllegalArgumentException("Loan is already returned (closed).");
 
@@ -173,72 +390,71 @@ public class LoanService {
             throw new IllegalArgumentException("Irreparable IDs not in this loan: " + unknown);
         }
 
-        // kardex
-        UserEntity kardexUser = new UserEntity();
-        kardexUser.setRut(loan.getRutUser());
-
-        int damagePenalty = 0;
-
+        ReturnPlan plan = new ReturnPlan();
         for (LoanItemEntity line : loan.getItems()) {
             Long toolId = line.getTool().getId();
             ToolEntity tool = line.getTool();
 
             if (irreparableToolIds.contains(toolId)) {
                 int replacement = Optional.ofNullable(tool.getRepositionValue()).orElse(0);
-                damagePenalty += replacement;
-                toolService.updateTool(toolId, "Dada de baja", null, null, kardexUser);
+                plan.damagePenalty += replacement;
+                plan.targets.put(toolId, ToolState.WRITTEN_OFF);
 
             } else if (damagedToolIds.contains(toolId)) {
                 int repair = Math.max(0, Optional.ofNullable(repairCosts.get(toolId)).orElse(0));
-                damagePenalty += repair;
-                toolService.updateTool(toolId, "En reparación", null, null, kardexUser);
+                plan.damagePenalty += repair;
+                plan.targets.put(toolId, ToolState.IN_REPAIR);
 
             } else {
-                toolService.updateTool(toolId, "Disponible", null, null, kardexUser);
+                plan.targets.put(toolId, ToolState.AVAILABLE);
             }
         }
+        return plan;
+    }
 
+    private void closeLoan(LoanEntity loan, LocalDate actualReturnDate, Integer finePerDay, int damagePenalty) {
         int fineRate = (finePerDay == null) ? 0 : Math.max(0, finePerDay);
         long lateDays = Math.max(0, ChronoUnit.DAYS.between(loan.getReturnDate(), actualReturnDate));
-        int lateFine = (int) (lateDays * (long) fineRate);
+        // never below what the nightly accrual already charged
+        int lateFine = Math.max(loan.getLateFine(), (int) (lateDays * (long) fineRate));
 
         loan.setLateReturnDate(actualReturnDate);
         loan.setLateFine(lateFine);
-        loan.setDamagePenalty(damagePenalty);
         if (lateFine > 0) loan.setLateFinePaid(false);
+        loan.setDamagePenalty(damagePenalty);
         if (damagePenalty > 0) loan.setDamagePenaltyPaid(false);
-
-        LoanEntity saved = loanRepository.save(loan);
-
-        UserEntity customer = userRepository.findByRut(loan.getRutUser());
-        if (customer != null) {
-            customer.setAmountOfLoans(Math.max(0, customer.getAmountOfLoans() - 1));
-            userRepository.save(customer);
-        }
-        userService.recomputeActiveStatus(loan.getRutUser());
-        return saved;
+        loan.refreshOutstandingDebt();
     }
 
-    @Transactional
-    public LoanEntity payFines(Long loanId, boolean payLateFine, boolean payDamagePenalty) {
-        LoanEntity loan = loanRepository.findById(loanId)
-                .orElseThrow(() -> new IllegalArgumentException("Loan not found: " + loanId));
-
-        if (payLateFine && loan.getLateFine() > 0) {
-            loan.setLateFinePaid(true);
-        }
-        if (payDamagePenalty && loan.getDamagePenalty() > 0) {
-            loan.setDamagePenaltyPaid(true);
-        }
+    // The late fine keeps growing until the tools are back, so it is only settled on a closed loan
+    private static void checkReturned(LoanEntity loan) {
+        if (loan.getLateReturnDate() == null)
+            throw new IllegalArgumentException("Loan " + loan.getId() + " is still open: fines are paid once it is returned.");
+    }
 
-        LoanEntity saved = loanRepository.save(loan);
+    private static void checkBulkSize(List<?> requests) {
+        if (requests == null || requests.isEmpty())
+            throw new IllegalArgumentException("At least one loan is required.");
+        if (requests.size() > MAX_BULK_LOANS)
+            throw new IllegalArgumentException("At most " + MAX_BULK_LOANS + " loans per request.");
+    }
 
-        // Recalculate 'active'
-        userService.recomputeActiveStatus(loan.getRutUser());
-        return saved;
+    private Map<Long, LoanEntity> loadLoans(List<Long> loanIds) {
+        Set<Long> ids = new HashSet<>();
+        for (Long id : loanIds) if (id != null) ids.add(id);
+        Map<Long, LoanEntity> out = new HashMap<>();
+        if (ids.isEmpty()) return out;
+        for (LoanEntity loan : loanRepository.findByIdIn(ids)) out.put(loan.getId(), loan);
+        return out;
     }
 
-    //Helpers
+    private static LoanEntity bulkTarget(Map<Long, LoanEntity> loans, Long loanId, Set<Long> seen) {
+        if (loanId == null) throw new IllegalArgumentException("Each entry requires 'loanId'.");
+        if (!seen.add(loanId)) throw new IllegalArgumentException("Loan repeated in the same request: " + loanId);
+        LoanEntity loan = loans.get(loanId);
+        if (loan == null) throw new IllegalArgumentException("Loan not found: " + loanId);
+        return loan;
+    }
 
     private int calculateLoanTotal(LocalDate reservationDate, LocalDate returnDate) {
         long days = ChronoUnit.DAYS.between(reservationDate, returnDate);
@@ -248,14 +464,22 @@ public class LoanService {
     }
 
 
+    // Changes with every committed loan write, used as ETag by loan reports
+    public long version() {
+        return changeCounters.current(ChangeCounterService.Aggregate.LOANS);
+    }
+
+    @Transactional(readOnly = true)
     public List<LoanEntity> listActiveLoans(String rutUser) {
         return loanRepository.findByRutUserAndLateReturnDateIsNull(rutUser);
     }
 
+    @Transactional(readOnly = true)
     public List<LoanEntity> listAllActiveLoans() {
         return loanRepository.findByLateReturnDateIsNull();
     }
 
+    @Transactional(readOnly = true)
     public Page<LoanEntity> listLoansWithUnpaidDebts(String rutUser,
                                                      LocalDate start,
                                                      LocalDate end,
@@ -265,20 +489,44 @@ public class LoanService {
         boolean hasStart = (start != null);
         boolean hasEnd   = (end   != null);
 
-        return loanRepository.findLoansWithUnpaidDebts(
+        return loadPage(loanRepository.findIdsWithUnpaidDebts(
                 rut,
                 hasStart, start,
                 hasEnd,   end,
                 pageable
-        );
+        ));
     }
 
+    @Transactional(readOnly = true)
     public Page<LoanEntity> listOverdueLoans(String rutUser, Pageable pageable) {
-        LocalDate today = LocalDate.now();
-        if (rutUser == null || rutUser.isBlank()) {
-            return loanRepository.findByLateReturnDateIsNullAndReturnDateBefore(today, pageable);
+        String rut = (rutUser == null || rutUser.isBlank()) ? null : rutUser;
+        return loadPage(loanRepository.findOverdueIds(rut, LocalDate.now(), pageable));
+    }
+
+    // [tool name, times loaned], most loaned first. Served under a version() ETag, so read from the primary.
+    @Transactional(readOnly = true)
+    public List<Object[]> topTools(LocalDate start, LocalDate end, int limit) {
+        return RoutingDataSource.onPrimary(() ->
+                loanItemRepository.topByToolName(start != null, start, end != null, end, PageRequest.of(0, limit)));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<LoanEntity> listLoansByUser(String rutUser, Pageable pageable) {
+        return loadPage(loanRepository.findIdsByRutUser(rutUser, pageable));
+    }
+
+    // Second step of a paged listing: the page's loans with items and tools in one query, in the page's order.
+    // Everything the JSON needs is loaded here, nothing is left to lazy-load after the transaction.
+    private Page<LoanEntity> loadPage(Page<Long> ids) {
+        if (ids.isEmpty()) return new PageImpl<>(List.of(), ids.getPageable(), ids.getTotalElements());
+        Map<Long, LoanEntity> byId = new HashMap<>();
+        for (LoanEntity l : loanRepository.findByIdIn(ids.getContent())) byId.put(l.getId(), l);
+        List<LoanEntity> loans = new ArrayList<>(ids.getNumberOfElements());
+        for (Long id : ids.getContent()) {
+            LoanEntity l = byId.get(id);
+            if (l != null) loans.add(l); // deleted between both queries
         }
-        return loanRepository.findByRutUserAndLateReturnDateIsNullAndReturnDateBefore(rutUser, today, pageable);
+        return new PageImpl<>(loans, ids.getPageable(), ids.getTotalElements());
     }
 
 
@@ -288,4 +536,47 @@ public class LoanService {
         public Integer quantity;
         public Item() {}
     }
+
+    // Body entry of the bulk return
+    public static class ReturnRequest {
+        public Long loanId;
+        public LocalDate actualReturnDate;
+        public Integer finePerDay;
+        public Set<Long> damaged;
+        public Set<Long> irreparable;
+        public Map<Long, Integer> damagedCosts;
+        public ReturnRequest() {}
+    }
+
+    // Body entry of the bulk fine payment
+    public static class FinePayment {
+        public Long loanId;
+        public boolean payLateFine;
+        public boolean payDamagePenalty;
+        public FinePayment() {}
+    }
+
+    // Outcome of one loan of a bulk request
+    @Data
+    @AllArgsConstructor
+    public static class BulkResult {
+        private Long loanId;
+        private boolean ok;
+        private Integer lateFine;
+        private Integer damagePenalty;
+        private String error;
+
+        static BulkResult ok(LoanEntity loan) {
+            return new BulkResult(loan.getId(), true, loan.getLateFine(), loan.getDamagePenalty(), null);
+        }
+
+        static BulkResult failed(Long loanId, String error) {
+            return new BulkResult(loanId, false, null, null, error);
+        }
+    }
+
+    private static class ReturnPlan {
+        final Map<Long, ToolState> targets = new LinkedHashMap<>();
+        int damagePenalty;
+    }
 }
\ No newline at end of file
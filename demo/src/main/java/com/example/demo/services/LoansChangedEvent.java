@@ -0,0 +1,8 @@
+package com.example.demo.services;
+
+// Published by LoanService when a loan is created, returned or its fines are paid,
+// and by OverdueLoanDetector when an open loan passes its return date
+public record LoansChangedEvent(String rutUser, Long loanId, Kind kind) {
+
+    public enum Kind { CREATED, RETURNED, FINES_PAID, OVERDUE }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.LoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Loans turn overdue when the date changes, not on a write; this publishes that transition once per loan
+@Component
+@RequiredArgsConstructor
+public class OverdueLoanDetector {
+
+    private final LoanRepository loanRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // loans with returnDate < checkedUpTo were already overdue at the last check (or at startup)
+    private LocalDate checkedUpTo = LocalDate.now();
+
+    @Scheduled(cron = "${app.stream.overdue-cron:0 */5 * * * *}")
+    public synchronized void detect() {
+        detect(LocalDate.now());
+    }
+
+    synchronized int detect(LocalDate today) {
+        if (!today.isAfter(checkedUpTo)) return 0;
+        List<Object[]> rows = loanRepository.findOpenWithReturnDateBetween(checkedUpTo, today);
+        for (Object[] r : rows) {
+            eventPublisher.publishEvent(
+                    new LoansChangedEvent((String) r[1], (Long) r[0], LoansChangedEvent.Kind.OVERDUE));
+        }
+        checkedUpTo = today;
+        return rows.size();
+    }
+}
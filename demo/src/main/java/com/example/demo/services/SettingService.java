@@ -3,6 +3,7 @@ package com.example.demo.services;
 import com.example.demo.entities.SettingEntity;
 import com.example.demo.repositories.SettingRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,8 +13,13 @@ public class SettingService {
 
     public static final String daily_key = "daily_rent_price";
     private static final int default_price = 2500;
+    // late fine per day accrued on loans still out (LateFineAccrualJob); 0 leaves accrual off
+    public static final String daily_fine_key = "daily_fine_rate";
+    private static final int default_fine = 0;
 
     private final SettingRepository repo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeCounterService changeCounters;
 
     @Transactional(readOnly = true)
     public int getDailyRentPrice() {
@@ -29,6 +35,29 @@ public class SettingService {
     public int setDailyRentPrice(int value) {
         if (value < 0) throw new IllegalArgumentException("Daily price must be >= 0");
         repo.save(new SettingEntity(daily_key, String.valueOf(value)));
+        eventPublisher.publishEvent(new SettingsChangedEvent(daily_key));
         return value;
     }
+
+    @Transactional(readOnly = true)
+    public int getDailyFineRate() {
+        return repo.findById(daily_fine_key)
+                .map(s -> {
+                    try { return Integer.parseInt(s.getText()); }
+                    catch (Exception e) { return default_fine; }
+                })
+                .orElse(default_fine);
+    }
+
+    @Transactional
+    public int setDailyFineRate(int value) {
+        if (value < 0) throw new IllegalArgumentException("Daily fine must be >= 0");
+        repo.save(new SettingEntity(daily_fine_key, String.valueOf(value)));
+        eventPublisher.publishEvent(new SettingsChangedEvent(daily_fine_key));
+        return value;
+    }
+
+    public long version() {
+        return changeCounters.current(ChangeCounterService.Aggregate.SETTINGS);
+    }
 }
@@ -0,0 +1,5 @@
+package com.example.demo.services;
+
+// Published by SettingService when a setting value is written
+public record SettingsChangedEvent(String key) {
+}
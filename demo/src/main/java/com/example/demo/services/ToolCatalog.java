@@ -0,0 +1,130 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.repositories.ToolRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Immutable in-memory view of the tool table that backs the names-categories, available and by-state listings.
+ * Readers just dereference the current snapshot; writers publish {@link ToolsChangedEvent} and the changed
+ * buckets are copied into a new snapshot once their transaction commits.
+ * The snapshot version is the TOOLS change counter, so writes made by another replica trigger a full reload.
+ */
+@Component
+@RequiredArgsConstructor
+public class ToolCatalog {
+
+    private final ToolRepository toolRepository;
+    private final ChangeCounterService changeCounters;
+
+    private volatile Snapshot snapshot;
+
+    public Snapshot current() {
+        Snapshot s = snapshot;
+        long counter = changeCounters.current(ChangeCounterService.Aggregate.TOOLS);
+        return (s != null && s.version() >= counter) ? s : load(counter);
+    }
+
+    public long version() {
+        return current().version();
+    }
+
+    // Runs after ChangeCounterService has bumped the counter for this transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public synchronized void onToolsChanged(ToolsChangedEvent event) {
+        Snapshot s = snapshot;
+        if (s == null) return; // not loaded yet, first read will see the committed rows
+
+        // Same transaction (counter already applied) or exactly our bump: the delta is enough.
+        // Anything else means other writes happened in between, so reload instead of guessing.
+        long counter = changeCounters.current(ChangeCounterService.Aggregate.TOOLS);
+        if (counter != s.version() && counter != s.version() + 1) {
+            snapshot = null;
+            return;
+        }
+
+        Map<Long, ToolEntity> byId = new TreeMap<>(s.byId());
+        for (ToolEntity t : event.tools()) {
+            if (t.getId() != null) byId.put(t.getId(), copy(t));
+        }
+        snapshot = build(counter, byId);
+    }
+
+    // Drops the snapshot so the next read reloads the whole table
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    //Helpers
+
+    // The counter is read before the rows, so a concurrent write can only make the snapshot look older
+    private synchronized Snapshot load(long counter) {
+        Snapshot s = snapshot;
+        if (s != null && s.version() >= counter) return s;
+        Map<Long, ToolEntity> byId = new TreeMap<>();
+        for (ToolEntity t : toolRepository.findAll()) byId.put(t.getId(), copy(t));
+        snapshot = build(counter, byId);
+        return snapshot;
+    }
+
+    private static Snapshot build(long version, Map<Long, ToolEntity> byId) {
+        List<ToolEntity> available = new ArrayList<>();
+        Map<ToolState, List<ToolEntity>> byState = new EnumMap<>(ToolState.class);
+        // LinkedHashMap keeps first-seen order and removes duplicated name+category
+        Map<String, ToolService.NameCategory> unique = new LinkedHashMap<>();
+
+        for (ToolEntity t : byId.values()) {
+            if (t.getInitialState() != null)
+                byState.computeIfAbsent(t.getInitialState(), k -> new ArrayList<>()).add(t);
+            if (t.getInitialState() == ToolState.AVAILABLE && t.getAmount() > 0) available.add(t);
+
+            if (t.getName() == null || t.getCategory() == null) continue;
+            unique.putIfAbsent(t.getName() + "||" + t.getCategory(),
+                    new ToolService.NameCategory(t.getName(), t.getCategory()));
+        }
+
+        Map<ToolState, List<ToolEntity>> frozenByState = new EnumMap<>(ToolState.class);
+        byState.forEach((k, v) -> frozenByState.put(k, List.copyOf(v)));
+        return new Snapshot(
+                version,
+                Collections.unmodifiableMap(byId),
+                List.copyOf(available),
+                List.copyOf(unique.values()),
+                Map.copyOf(frozenByState)
+        );
+    }
+
+    private static ToolEntity copy(ToolEntity t) {
+        return new ToolEntity(
+                t.getId(),
+                t.getName(),
+                t.getCategory(),
+                t.getInitialState(),
+                t.getRepositionValue(),
+                t.isAvailable(),
+                t.getAmount()
+        );
+    }
+
+    public record Snapshot(
+            long version,
+            Map<Long, ToolEntity> byId,
+            List<ToolEntity> available,
+            List<ToolService.NameCategory> namesWithCategory,
+            Map<ToolState, List<ToolEntity>> byState
+    ) {
+        // "Disponible" only lists buckets with stock, like the old repository query
+        public List<ToolEntity> byState(ToolState state) {
+            if (state == ToolState.AVAILABLE) return available;
+            return byState.getOrDefault(state, List.of());
+        }
+    }
+}
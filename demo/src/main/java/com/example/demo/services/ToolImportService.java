@@ -0,0 +1,219 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.entities.UserEntity;
+import com.example.demo.repositories.KardexRepository;
+import com.example.demo.repositories.ToolRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+public class ToolImportService {
+
+    // normalized names looked up (and row-locked) per query when matching existing buckets, and new buckets per insert
+    static final int LOOKUP_CHUNK = 500;
+
+    private final ToolRepository toolRepository;
+    private final KardexRepository kardexRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // CSV with header name,category,amount,repositionValue[,state]. Lines are merged into their
+    // (name, category, state) bucket while streaming, so memory grows with buckets, not lines.
+    // Every bucket then gets one save and one "Ingreso" kardex row, written in JDBC batches.
+    @Transactional
+    public ImportSupport.ImportReport importTools(InputStream in, UserEntity rutUser) throws IOException {
+        ImportSupport.ImportReport report = new ImportSupport.ImportReport();
+        Map<BucketKey, Bucket> buckets = new LinkedHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                if (header == null) {
+                    header = readHeader(line);
+                    continue;
+                }
+                report.setTotal(report.getTotal() + 1);
+                try {
+                    Bucket row = parse(header, ImportSupport.splitCsv(line));
+                    buckets.merge(row.key, row, (a, b) -> {
+                        a.amount += b.amount;
+                        a.repositionValue = b.repositionValue; // last line wins, like saveTool
+                        return a;
+                    });
+                } catch (IllegalArgumentException ex) {
+                    report.addError(lineNo, ex.getMessage());
+                }
+            }
+        }
+        if (buckets.isEmpty()) return report;
+
+        Map<BucketKey, ToolEntity> existing = loadExisting(buckets.keySet());
+        createMissing(buckets, existing);
+        List<ToolEntity> tools = new ArrayList<>(buckets.size());
+        for (Bucket b : buckets.values()) {
+            ToolEntity tool = existing.get(b.key);
+            if (tool == null)
+                throw new IllegalStateException("Bucket not found after insert: " + b.name + "/" + b.category + "/" + b.state.label());
+            tool.setAmount(tool.getAmount() + b.amount);
+            tool.setRepositionValue(b.repositionValue);
+            tool.setAvailable(tool.getInitialState() == ToolState.AVAILABLE);
+            tools.add(tool);
+        }
+        List<ToolEntity> saved = toolRepository.saveAll(tools);
+
+        List<KardexEntity> movements = new ArrayList<>(saved.size());
+        LocalDate today = LocalDate.now();
+        Iterator<Bucket> it = buckets.values().iterator();
+        for (ToolEntity tool : saved) {
+            int entered = it.next().amount;
+            KardexEntity k = new KardexEntity();
+            k.setTool(tool);
+            k.setRutUser(rutUser.getRut());
+            k.setType(MovementType.ENTRY);
+            k.setMovementDate(today);
+            k.setStock(entered); // only the amount entered, as in saveTool
+            k.setQuantity(entered);
+            movements.add(k);
+        }
+        kardexRepository.saveAll(movements);
+
+        report.setInserted(report.getTotal() - report.getErrors().size());
+        eventPublisher.publishEvent(new ToolsChangedEvent(saved));
+        return report;
+    }
+
+    //Helpers
+
+    private Map<BucketKey, ToolEntity> loadExisting(Set<BucketKey> keys) {
+        Set<String> names = new LinkedHashSet<>();
+        for (BucketKey k : keys) names.add(k.name());
+
+        Map<BucketKey, ToolEntity> out = new HashMap<>();
+        List<String> chunk = new ArrayList<>(LOOKUP_CHUNK);
+        for (String name : names) {
+            chunk.add(name);
+            if (chunk.size() == LOOKUP_CHUNK) {
+                collect(chunk, keys, out);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) collect(chunk, keys, out);
+        return out;
+    }
+
+    // Buckets not found are inserted empty in multi-row statements (a concurrent writer's row is kept),
+    // then locked with the same chunked lookup as the existing ones
+    private void createMissing(Map<BucketKey, Bucket> buckets, Map<BucketKey, ToolEntity> existing) {
+        List<ToolEntity> missing = new ArrayList<>();
+        for (Bucket b : buckets.values()) {
+            if (!existing.containsKey(b.key)) {
+                missing.add(new ToolEntity(null, b.name, b.category, b.state, b.repositionValue,
+                        b.state == ToolState.AVAILABLE, 0));
+            }
+        }
+        if (missing.isEmpty()) return;
+
+        for (int from = 0; from < missing.size(); from += LOOKUP_CHUNK) {
+            toolRepository.insertMissingBuckets(missing.subList(from, Math.min(from + LOOKUP_CHUNK, missing.size())));
+        }
+        Set<BucketKey> created = new LinkedHashSet<>();
+        for (ToolEntity t : missing) created.add(BucketKey.of(t.getName(), t.getCategory(), t.getInitialState()));
+        existing.putAll(loadExisting(created));
+    }
+
+    private void collect(List<String> names, Set<BucketKey> keys, Map<BucketKey, ToolEntity> out) {
+        for (ToolEntity t : toolRepository.findBucketsForUpdateByKeyNames(names)) {
+            BucketKey k = BucketKey.of(t.getName(), t.getCategory(), t.getInitialState());
+            if (keys.contains(k)) out.putIfAbsent(k, t);
+        }
+    }
+
+    private static Map<String, Integer> readHeader(String line) {
+        Map<String, Integer> header = new HashMap<>();
+        List<String> cols = ImportSupport.splitCsv(line);
+        for (int i = 0; i < cols.size(); i++) header.put(cols.get(i).toLowerCase(), i);
+        for (String required : List.of("name", "category", "amount", "repositionvalue")) {
+            if (!header.containsKey(required))
+                throw new IllegalArgumentException("CSV header must contain a '" + required + "' column.");
+        }
+        return header;
+    }
+
+    // Same rules as ToolService.saveTool
+    private static Bucket parse(Map<String, Integer> header, List<String> cols) {
+        String name = column(header, cols, "name");
+        String category = column(header, cols, "category");
+        String stateLabel = column(header, cols, "state");
+        if (name == null) throw new IllegalArgumentException("Tool name is required.");
+        if (category == null) throw new IllegalArgumentException("Tool category is required.");
+        ToolState state = (stateLabel == null) ? ToolState.AVAILABLE : ToolState.fromLabel(stateLabel);
+
+        int amount = parseInt(column(header, cols, "amount"), "amount");
+        int repositionValue = parseInt(column(header, cols, "repositionvalue"), "repositionValue");
+        if (repositionValue <= 0) throw new IllegalArgumentException("Reposition value must be greater than 0.");
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be greater than 0.");
+
+        Bucket b = new Bucket();
+        b.key = BucketKey.of(name, category, state);
+        b.name = name;
+        b.category = category;
+        b.state = state;
+        b.amount = amount;
+        b.repositionValue = repositionValue;
+        return b;
+    }
+
+    private static String column(Map<String, Integer> header, List<String> cols, String name) {
+        Integer idx = header.get(name);
+        if (idx == null || idx >= cols.size()) return null;
+        String v = cols.get(idx).trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    private static int parseInt(String raw, String field) {
+        if (raw == null) throw new IllegalArgumentException(field + " is required.");
+        try {
+            return Integer.parseInt(raw);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + raw);
+        }
+    }
+
+    // Normalized like the ux_tool_bucket_code index: "Taladro " and "taladro" are the same bucket
+    record BucketKey(String name, String category, ToolState state) {
+        static BucketKey of(String name, String category, ToolState state) {
+            return new BucketKey(normalize(name), normalize(category), state);
+        }
+
+        private static String normalize(String s) {
+            return s == null ? null : s.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static class Bucket {
+        BucketKey key;
+        String name;     // as first written in the file, used when the bucket is created
+        String category;
+        ToolState state;
+        int amount;
+        int repositionValue;
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.demo.services;
 
 import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
 import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
 import com.example.demo.entities.UserEntity;
 import com.example.demo.repositories.KardexRepository;
 import com.example.demo.repositories.ToolRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Metrics;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -22,9 +28,14 @@ public class ToolService {
     @Autowired
     private KardexRepository kardexRepository;
 
-    private static final List<String> validState =
-            Arrays.asList("Disponible", "Prestada", "En reparación", "Dada de baja");
+    @Autowired
+    private ToolCatalog toolCatalog;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
+    @Transactional
+    @Timed(value = "tool.save", histogram = true)
     public ToolEntity saveTool(ToolEntity tool, UserEntity rutUser) {
         // Basic validations
         if (tool.getName() == null || tool.getName().trim().isEmpty()) {
@@ -39,189 +50,43 @@ public class ToolService {
         if (tool.getAmount() <= 0) {
             throw new IllegalArgumentException("Amount must be greater than 0.");
         }
-        if (tool.getInitialState() == null || tool.getInitialState().trim().isEmpty()) {
+        if (tool.getInitialState() == null) {
             throw new IllegalArgumentException("Initial state is required.");
         }
-        if (!validState.contains(tool.getInitialState())) {
-            throw new IllegalArgumentException("Initial state is not valid.");
-        }
 
-        // Check if a tool with the same name and category already exists
-        List<ToolEntity> existing = toolRepository
-                .findByNameAndCategoryAndInitialState(tool.getName(), tool.getCategory(), tool.getInitialState());
-
-        ToolEntity savedTool;
-        if (!existing.isEmpty()) {
-            ToolEntity bucket = existing.get(0);
-            bucket.setAmount(bucket.getAmount() + tool.getAmount());
-            bucket.setAvailable("Disponible".equalsIgnoreCase(bucket.getInitialState()));
-            bucket.setRepositionValue(tool.getRepositionValue()); // si quieres actualizarlo
-            savedTool = toolRepository.save(bucket);
-        } else {
-            ToolEntity newTool = new ToolEntity(
-                    null,
-                    tool.getName(),
-                    tool.getCategory(),
-                    tool.getInitialState(),
-                    tool.getRepositionValue(),
-                    "Disponible".equalsIgnoreCase(tool.getInitialState()),
-                    tool.getAmount()
-            );
-            savedTool = toolRepository.save(newTool);
-        }
+        // Same normalized name-category-state means same bucket; created empty if it does not exist yet
+        ToolEntity bucket = toolRepository.lockBucket(
+                tool.getName(), tool.getCategory(), tool.getInitialState(), tool.getRepositionValue());
+        bucket.setAmount(bucket.getAmount() + tool.getAmount());
+        bucket.setAvailable(bucket.getInitialState() == ToolState.AVAILABLE);
+        bucket.setRepositionValue(tool.getRepositionValue()); // si quieres actualizarlo
+        ToolEntity savedTool = toolRepository.save(bucket);
 
         // Record movement in kardex (only the amount entered, not the total)
         KardexEntity kardex = new KardexEntity();
         kardex.setTool(savedTool);
         kardex.setRutUser(rutUser.getRut()); // Usuario autenticado aquí
-        kardex.setType("Ingreso");
+        kardex.setType(MovementType.ENTRY);
         kardex.setMovementDate(LocalDate.now());
         kardex.setStock(tool.getAmount()); // SOLO la cantidad ingresada
-        kardexRepository.save(kardex);
+        writeKardex(kardex);
 
+        eventPublisher.publishEvent(new ToolsChangedEvent(List.of(savedTool)));
         return savedTool;
     }
 
-    public ToolEntity updateTool(Long id, String newState, Integer newAmount,
+    @Transactional
+    @Timed(value = "tool.update", histogram = true)
+    public ToolEntity updateTool(Long id, ToolState newState, Integer newAmount,
                                  Integer newRepositionValue, UserEntity rutUser) {
 
         ToolEntity tool = toolRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Tool not found"));
 
-        if (newState != null) {
-            if (!validState.contains(newState)) {
-                throw new IllegalArgumentException("Invalid state: " + newState);
-            }
-
-            // Case 1: Disponible -> another state
-            if (tool.getInitialState().equals("Disponible") && !newState.equals("Disponible")) {
-                if (tool.getAmount() <= 0) {
-                    throw new IllegalArgumentException("No hay stock disponible para mover a otro estado.");
-                }
-
-                // Reduce in Disponible
-                tool.setAmount(tool.getAmount() - 1);
-                toolRepository.save(tool);
-
-                // Check if a tool with the same status already exists.
-                List<ToolEntity> existingTools = toolRepository.findByNameAndCategory(tool.getName(), tool.getCategory());
-                Optional<ToolEntity> sameStateTool = existingTools.stream()
-                        .filter(t -> newState.equals(t.getInitialState()))
-                        .findFirst();
-
-                ToolEntity targetTool;
-                if (sameStateTool.isPresent()) {
-                    targetTool = sameStateTool.get();
-                    targetTool.setAmount(targetTool.getAmount() + 1);
-                } else {
-                    targetTool = new ToolEntity(
-                            null,
-                            tool.getName(),
-                            tool.getCategory(),
-                            newState,
-                            tool.getRepositionValue(),
-                            false,
-                            1
-                    );
-                }
-                ToolEntity savedTargetTool = toolRepository.save(targetTool);
-
-                // Kardex
-                KardexEntity kardex = new KardexEntity();
-                kardex.setTool(savedTargetTool);
-                kardex.setRutUser(rutUser.getRut());
-                kardex.setType("Cambio de estado: " + newState);
-                kardex.setMovementDate(LocalDate.now());
-                kardex.setStock(savedTargetTool.getAmount());
-                kardexRepository.save(kardex);
-
-                return savedTargetTool;
-            }
-
-            // Case 2: another state -> Disponible
-            if (!tool.getInitialState().equals("Disponible") && newState.equals("Disponible")) {
-                if (tool.getAmount() <= 0) {
-                    throw new IllegalArgumentException("No hay stock en este estado para devolver a Disponible.");
-                }
-
-                // Reduce actual state
-                tool.setAmount(tool.getAmount() - 1);
-                toolRepository.save(tool);
-
-                // search Disponible tool
-                List<ToolEntity> existingTools = toolRepository.findByNameAndCategory(tool.getName(), tool.getCategory());
-                Optional<ToolEntity> disponibleTool = existingTools.stream()
-                        .filter(t -> "Disponible".equals(t.getInitialState()))
-                        .findFirst();
-
-                ToolEntity targetTool;
-                if (disponibleTool.isPresent()) {
-                    targetTool = disponibleTool.get();
-                    targetTool.setAmount(targetTool.getAmount() + 1);
-                } else {
-                    targetTool = new ToolEntity(
-                            null,
-                            tool.getName(),
-                            tool.getCategory(),
-                            "Disponible",
-                            tool.getRepositionValue(),
-                            true,
-                            1
-                    );
-                }
-                ToolEntity savedTargetTool = toolRepository.save(targetTool);
-
-                // Kardex
-                KardexEntity kardex = new KardexEntity();
-                kardex.setTool(savedTargetTool);
-                kardex.setRutUser(rutUser.getRut());
-                kardex.setType("Cambio de estado: Disponible");
-                kardex.setMovementDate(LocalDate.now());
-                kardex.setStock(savedTargetTool.getAmount());
-                kardexRepository.save(kardex);
-
-                return savedTargetTool;
-            }
-
-            // Case 3: state A (≠ Disponible) → state B (≠ Disponible)
-            if (!tool.getInitialState().equals("Disponible") && !newState.equals("Disponible")) {
-
-                if (tool.getAmount() <= 0) {
-                    throw new IllegalArgumentException("No hay stock en este estado para mover.");
-                }
-
-                // 1) Sustract from origin bucket
-                tool.setAmount(tool.getAmount() - 1);
-                toolRepository.save(tool);
-
-                // 2) Search/create destination bucket (same name+category+reposition, state = newState)
-                Optional<ToolEntity> optTarget =
-                        toolRepository.findFirstByNameAndCategoryAndInitialState(
-                                tool.getName(), tool.getCategory(), newState);
-
-                ToolEntity target = optTarget.orElseGet(() -> new ToolEntity(
-                        null,
-                        tool.getName(),
-                        tool.getCategory(),
-                        newState,
-                        tool.getRepositionValue(),
-                        false,      // available only in "Disponible"
-                        0
-                ));
-                target.setAmount(target.getAmount() + 1);
-                ToolEntity savedTarget = toolRepository.save(target);
-
-                // 3) Kardex
-                KardexEntity k = new KardexEntity();
-                k.setTool(savedTarget);
-                k.setRutUser(rutUser.getRut());
-                k.setType("Cambio de estado: " + newState);
-                k.setMovementDate(LocalDate.now());
-                k.setStock(savedTarget.getAmount());
-                kardexRepository.save(k);
-
-                return savedTarget;
-            }
+        // Same state is not a move: only amount / reposition value are edited below.
+        // A move is one unit through moveUnits, the single locking path (and kardex row with its quantity)
+        if (newState != null && newState != tool.getInitialState()) {
+            return moveUnits(id, newState, 1, rutUser);
         }
         if (newAmount != null) {
             if (newAmount < 0) throw new IllegalArgumentException("Amount cannot be negative.");
@@ -233,7 +98,102 @@ public class ToolService {
             tool.setRepositionValue(newRepositionValue);
         }
 
-        return toolRepository.save(tool);
+        ToolEntity saved = toolRepository.save(tool);
+        eventPublisher.publishEvent(new ToolsChangedEvent(List.of(saved)));
+        return saved;
+    }
+
+    // Moves `quantity` units of a bucket to another state in one go (instead of one updateTool call per unit)
+    @Transactional
+    public ToolEntity moveUnits(Long id, ToolState newState, int quantity, UserEntity rutUser) {
+        Move move = new Move();
+        move.toolId = id;
+        move.state = newState;
+        move.quantity = quantity;
+        return moveUnits(List.of(move), rutUser).get(0);
+    }
+
+    // Several moves, all or nothing. Moves of the same bucket to the same state are summed,
+    // so each (bucket, target state) pair writes a single kardex row. Returns the target buckets.
+    // Every pair is locked and checked before any bucket changes, so a rejected request (IllegalArgumentException)
+    // leaves nothing to roll back: a caller's transaction (LoanService.returnLoans) can report it and go on.
+    @Transactional(noRollbackFor = IllegalArgumentException.class)
+    @Timed(value = "tool.move", histogram = true)
+    public List<ToolEntity> moveUnits(List<Move> moves, UserEntity rutUser) {
+        if (moves == null || moves.isEmpty()) throw new IllegalArgumentException("At least one move is required.");
+
+        Map<String, Move> pairs = new LinkedHashMap<>();
+        for (Move m : moves) {
+            if (m == null || m.toolId == null) throw new IllegalArgumentException("Each move requires 'toolId'.");
+            if (m.state == null) throw new IllegalArgumentException("Each move requires 'state'.");
+            int qty = (m.quantity == null) ? 1 : m.quantity;
+            if (qty <= 0) throw new IllegalArgumentException("quantity must be >= 1");
+
+            Move pair = pairs.computeIfAbsent(m.toolId + "->" + m.state, k -> {
+                Move p = new Move();
+                p.toolId = m.toolId;
+                p.state = m.state;
+                p.quantity = 0;
+                return p;
+            });
+            pair.quantity += qty;
+        }
+
+        // 1) Lock and check every pair; stock is tracked as the earlier pairs will leave it
+        List<LockedMove> locked = new ArrayList<>(pairs.size());
+        Map<Long, Integer> stock = new HashMap<>();
+        for (Move pair : pairs.values()) {
+            ToolEntity tool = toolRepository.findById(pair.toolId)
+                    .orElseThrow(() -> new IllegalArgumentException("Tool not found (id=" + pair.toolId + ")"));
+            if (pair.state == tool.getInitialState())
+                throw new IllegalArgumentException("Tool id=" + pair.toolId + " is already '" + pair.state.label() + "'.");
+            tool.getInitialState().checkMoveTo(pair.state);
+
+            // Both buckets locked (in id order, created if missing) and reloaded before the stock is checked
+            FlightEvents.StockMoved moved = new FlightEvents.StockMoved();
+            moved.begin();
+            long lockStart = System.nanoTime();
+            ToolEntity target = toolRepository.lockMove(tool, pair.state);
+            long lockWait = System.nanoTime() - lockStart;
+            int available = stock.getOrDefault(tool.getId(), tool.getAmount());
+            if (available < pair.quantity)
+                throw new IllegalArgumentException(notEnoughStock(tool, pair, available));
+            stock.put(tool.getId(), available - pair.quantity);
+            stock.merge(target.getId(), target.getAmount() + pair.quantity, (was, ignored) -> was + pair.quantity);
+
+            locked.add(new LockedMove(pair, tool, target, moved, lockWait));
+        }
+
+        // 2) Apply
+        Map<Long, ToolEntity> touched = new LinkedHashMap<>();
+        List<ToolEntity> targets = new ArrayList<>();
+        for (LockedMove m : locked) {
+            ToolEntity tool = m.tool();
+            Move pair = m.pair();
+            tool.setAmount(tool.getAmount() - pair.quantity);
+            toolRepository.save(tool);
+
+            ToolEntity target = m.target();
+            target.setAmount(target.getAmount() + pair.quantity);
+            ToolEntity savedTarget = toolRepository.save(target);
+            stockMoved(m.moved(), tool, pair.state, pair.quantity, m.lockWait());
+
+            KardexEntity k = new KardexEntity();
+            k.setTool(savedTarget);
+            k.setRutUser(rutUser.getRut());
+            k.setType(MovementType.stateChange(pair.state));
+            k.setMovementDate(LocalDate.now());
+            k.setStock(savedTarget.getAmount());
+            k.setQuantity(pair.quantity);
+            writeKardex(k);
+
+            touched.put(tool.getId(), tool);
+            touched.put(savedTarget.getId(), savedTarget);
+            targets.add(savedTarget);
+        }
+
+        eventPublisher.publishEvent(new ToolsChangedEvent(List.copyOf(touched.values())));
+        return targets;
     }
 
     public ToolEntity getToolByName(String name) {
@@ -246,30 +206,76 @@ public class ToolService {
                 .orElseThrow(() -> new IllegalArgumentException("Tool not found by name: " + name));
     }
 
+    // Listings below are served from the in-memory catalog snapshot (no query per call)
     public List<NameCategory> getAllNamesWithCategory() {
-        List<ToolEntity> tools = toolRepository.findAll();
-
-        // Uses a LinkedHashMap to maintain insertion order and avoid duplicates
-        Map<String, NameCategory> unique = new LinkedHashMap<>();
-        for (ToolEntity t : tools) {
-            if (t.getName() == null || t.getCategory() == null) continue;
-            String key = t.getName() + "||" + t.getCategory();
-            unique.putIfAbsent(key, new NameCategory(t.getName(), t.getCategory()));
-        }
-        return new ArrayList<>(unique.values());
+        return toolCatalog.current().namesWithCategory();
     }
+
     public List<ToolEntity> listAvailable() {
-        return toolRepository.findAllByInitialStateIgnoreCaseAndAmountGreaterThan("Disponible", 0);
+        return toolCatalog.current().available();
+    }
+
+    public List<ToolEntity> listByState(ToolState state) {
+        if (state == null) throw new IllegalArgumentException("state is required");
+        return toolCatalog.current().byState(state);
+    }
+
+    public long catalogVersion() {
+        return toolCatalog.version();
+    }
+
+    // Kardex inserts are timed on their own (kardex.write) to tell them apart from the bucket updates.
+    // No flush here: the insert stays queued for the batched flush at commit, so a bulk move sends all its rows together.
+    private void writeKardex(KardexEntity k) {
+        FlightEvents.KardexWritten written = new FlightEvents.KardexWritten();
+        written.begin();
+        Metrics.timer("kardex.write").record(() -> kardexRepository.save(k));
+        if (written.shouldCommit()) {
+            written.toolId = k.getTool().getId() == null ? 0 : k.getTool().getId();
+            written.movement = k.getType().label();
+            written.quantity = k.getQuantity() == null ? 1 : k.getQuantity();
+            written.stock = k.getStock();
+            written.commit();
+        }
     }
 
-    public List<ToolEntity> listByState(String state) {
-        if (state == null || state.isBlank()) throw new IllegalArgumentException("state is required");
-        if ("Disponible".equalsIgnoreCase(state)) {
-            return toolRepository.findAllByInitialStateIgnoreCaseAndAmountGreaterThan(state, 0);
+    // A single unit keeps the messages of the one-unit state change (updateTool)
+    private static String notEnoughStock(ToolEntity tool, Move pair, int available) {
+        if (pair.quantity == 1) {
+            return tool.getInitialState() == ToolState.AVAILABLE
+                    ? "No hay stock disponible para mover a otro estado."
+                    : pair.state == ToolState.AVAILABLE
+                    ? "No hay stock en este estado para devolver a Disponible."
+                    : "No hay stock en este estado para mover.";
         }
-        return toolRepository.findAllByInitialStateIgnoreCase(state);
+        return "Not enough stock for tool id=" + pair.toolId + ". Available: " + available;
+    }
+
+    // The event spans the target lock and both bucket writes; `from` still has its original state
+    private static void stockMoved(FlightEvents.StockMoved moved, ToolEntity from, ToolState to,
+                                   int quantity, long lockWait) {
+        if (!moved.shouldCommit()) return;
+        moved.toolId = from.getId() == null ? 0 : from.getId();
+        moved.tool = from.getName();
+        moved.fromState = from.getInitialState().label();
+        moved.toState = to.label();
+        moved.quantity = quantity;
+        moved.lockWait = lockWait;
+        moved.commit();
     }
 
+    // Body for bulk moves
+    public static class Move {
+        public Long toolId;
+        public ToolState state; // label, e.g. "En reparación"
+        public Integer quantity;
+        public Move() {}
+    }
+
+    // A pair of moveUnits whose buckets are locked and whose stock is checked, applied in the second pass
+    private record LockedMove(Move pair, ToolEntity tool, ToolEntity target,
+                              FlightEvents.StockMoved moved, long lockWait) {}
+
     @Data
     @AllArgsConstructor
     public static class NameCategory {
@@ -0,0 +1,9 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolEntity;
+
+import java.util.List;
+
+// Published by ToolService with the buckets a write touched; listeners run after commit
+public record ToolsChangedEvent(List<ToolEntity> tools) {
+}
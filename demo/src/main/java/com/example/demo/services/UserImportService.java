@@ -0,0 +1,253 @@
+package com.example.demo.services;
+
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
+import com.example.demo.repositories.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.regex.Pattern;
+
+@Service
+@RequiredArgsConstructor
+public class UserImportService {
+
+    // rows validated against the DB (and inserted) together
+    static final int CHUNK_SIZE = 500;
+
+    private static final Pattern RUT_PATTERN = Pattern.compile("^\\d{7,8}-[0-9K]$");
+
+    private static final String INSERT_SQL = """
+        insert into client (keycloak_id, name, email, rut, phone, admin, active, amount_of_loans)
+        values (?, ?, ?, ?, ?, ?, true, 0)
+    """;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final ChangeSequenceTracker changeSequence;
+    private final CacheInvalidationPublisher cacheInvalidation;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public enum Format { CSV, NDJSON }
+
+    // Streams the file line by line: only one chunk of rows is kept in memory at a time.
+    // Bad rows are reported and skipped, they never abort the rest of the file.
+    public ImportSupport.ImportReport importUsers(InputStream in, Format format) throws IOException {
+        ImportSupport.ImportReport report = new ImportSupport.ImportReport();
+        Set<String> seenEmails = new HashSet<>();
+        Set<String> seenRuts = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+
+                if (format == Format.CSV && header == null) {
+                    header = readHeader(line);
+                    continue;
+                }
+
+                report.setTotal(report.getTotal() + 1);
+                Row row;
+                try {
+                    row = (format == Format.CSV) ? fromCsv(header, line) : fromJson(line);
+                    row.line = lineNo;
+                    normalize(row);
+                } catch (IllegalArgumentException ex) {
+                    report.addError(lineNo, ex.getMessage());
+                    continue;
+                }
+
+                // duplicates inside the same file
+                if (!seenEmails.add(row.email)) {
+                    report.addError(lineNo, "Email repeated in file: " + row.email);
+                    continue;
+                }
+                if (row.rut != null && !seenRuts.add(row.rut)) {
+                    report.addError(lineNo, "RUT repeated in file: " + row.rut);
+                    continue;
+                }
+
+                chunk.add(row);
+                if (chunk.size() >= CHUNK_SIZE) {
+                    flush(chunk, report);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) flush(chunk, report);
+        if (report.getInserted() > 0) {
+            // client rows went in behind Hibernate's back: a cached findByRut/findByKeycloakId
+            // miss would keep answering "no such user" for them
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+            cacheInvalidation.publishAfterCommit("user:*");
+        }
+        return report;
+    }
+
+    //Helpers
+
+    // One query for emails and one for RUTs per chunk, then a single JDBC batch
+    private void flush(List<Row> chunk, ImportSupport.ImportReport report) {
+        Set<String> emails = new HashSet<>();
+        Set<String> ruts = new HashSet<>();
+        for (Row r : chunk) {
+            emails.add(r.email);
+            if (r.rut != null) ruts.add(r.rut);
+        }
+        Set<String> existingEmails = new HashSet<>(userRepository.findExistingEmails(emails));
+        Set<String> existingRuts = ruts.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(userRepository.findExistingRuts(ruts));
+
+        List<Row> toInsert = new ArrayList<>(chunk.size());
+        for (Row r : chunk) {
+            if (existingEmails.contains(r.email)) {
+                report.addError(r.line, "User with this email already exists.");
+            } else if (r.rut != null && existingRuts.contains(r.rut)) {
+                report.addError(r.line, "User with this RUT already exists.");
+            } else {
+                toInsert.add(r);
+            }
+        }
+        if (toInsert.isEmpty()) return;
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, toInsert, toInsert.size(), this::bind);
+                // ids are not read back; the stamp also covers rows still without a change_seq
+                changeSequence.markChanged(ChangeSequenceTracker.CLIENT, List.of());
+            });
+            report.setInserted(report.getInserted() + toInsert.size());
+        } catch (DataAccessException ex) {
+            // Somebody inserted one of these keys meanwhile: the batch was rolled back,
+            // retry row by row so only the offending lines are reported
+            int retried = 0;
+            for (Row r : toInsert) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, r));
+                    report.setInserted(report.getInserted() + 1);
+                    retried++;
+                } catch (DataAccessException rowEx) {
+                    report.addError(r.line, "Could not insert user: " + rowEx.getMostSpecificCause().getMessage());
+                }
+            }
+            // those rows committed one by one: stamp them (change_seq still null) so delta sync picks them up
+            if (retried > 0) {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                        changeSequence.markChanged(ChangeSequenceTracker.CLIENT, List.of()));
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, Row r) throws SQLException {
+        ps.setString(1, UserService.PENDING_KEYCLOAK_PREFIX + UUID.randomUUID());
+        ps.setString(2, r.name);
+        ps.setString(3, r.email);
+        if (r.rut == null) ps.setNull(4, Types.VARCHAR); else ps.setString(4, r.rut);
+        ps.setInt(5, r.phone);
+        ps.setBoolean(6, r.admin);
+    }
+
+    private void normalize(Row row) {
+        if (row.email == null || row.email.isBlank())
+            throw new IllegalArgumentException("Email is required.");
+        row.email = row.email.trim().toLowerCase();
+        if (!row.email.contains("@"))
+            throw new IllegalArgumentException("Invalid email: " + row.email);
+
+        if (row.rut != null && !row.rut.isBlank()) {
+            row.rut = UserService.normalizeRut(row.rut.trim());
+            if (!RUT_PATTERN.matcher(row.rut).matches())
+                throw new IllegalArgumentException("RUT inválido: " + row.rut);
+        } else {
+            row.rut = null;
+        }
+        if (row.name != null) row.name = row.name.trim();
+    }
+
+    private Map<String, Integer> readHeader(String line) {
+        Map<String, Integer> header = new HashMap<>();
+        List<String> cols = ImportSupport.splitCsv(line);
+        for (int i = 0; i < cols.size(); i++) header.put(cols.get(i).toLowerCase(), i);
+        if (!header.containsKey("email"))
+            throw new IllegalArgumentException("CSV header must contain an 'email' column.");
+        return header;
+    }
+
+    private Row fromCsv(Map<String, Integer> header, String line) {
+        List<String> cols = ImportSupport.splitCsv(line);
+        Row row = new Row();
+        row.email = column(header, cols, "email");
+        row.name = column(header, cols, "name");
+        row.rut = column(header, cols, "rut");
+        row.phone = parsePhone(column(header, cols, "phone"));
+        row.admin = Boolean.parseBoolean(column(header, cols, "admin"));
+        return row;
+    }
+
+    private Row fromJson(String line) {
+        Map<?, ?> json;
+        try {
+            json = objectMapper.readValue(line, Map.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Invalid JSON line.");
+        }
+        Row row = new Row();
+        row.email = asString(json.get("email"));
+        row.name = asString(json.get("name"));
+        row.rut = asString(json.get("rut"));
+        row.phone = parsePhone(asString(json.get("phone")));
+        row.admin = Boolean.parseBoolean(asString(json.get("admin")));
+        return row;
+    }
+
+    private static String column(Map<String, Integer> header, List<String> cols, String name) {
+        Integer idx = header.get(name);
+        if (idx == null || idx >= cols.size()) return null;
+        String v = cols.get(idx);
+        return v.isEmpty() ? null : v;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static int parsePhone(String raw) {
+        if (raw == null || raw.isBlank()) return 0;
+        Integer parsed = UserService.tryParsePhone(raw);
+        return parsed == null ? 0 : parsed;
+    }
+
+    private static class Row {
+        int line;
+        String name;
+        String email;
+        String rut;
+        int phone;
+        boolean admin;
+    }
+}
@@ -1,23 +1,38 @@
 package com.example.demo.services;
 
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
 import com.example.demo.entities.UserEntity;
 import com.example.demo.repositories.LoanRepository;
 import com.example.demo.repositories.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class UserService {
 
+    // keycloak_id placeholder for users created before their first login (bulk import)
+    public static final String PENDING_KEYCLOAK_PREFIX = "pending:";
+
     @Autowired private UserRepository userRepository;
     @Autowired private LoanRepository loanRepository;
+    @Autowired private ChangeSequenceTracker changeSequence;
+    @Autowired private CacheInvalidationPublisher cacheInvalidation;
 
     // PROVISIONING FROM JWT (reads RUT/phone number if they are in the token)
+    @Timed(value = "user.provision", histogram = true)
     public UserEntity provisionFromJwt(Jwt jwt) {
         String kcId  = jwt.getSubject(); // sub
         String email = jwt.getClaimAsString("email");
@@ -69,7 +84,7 @@ public class UserService {
             //Create
             //If it already existed via email and doesn't yet have a keycloakId, we'll adopt it.
             UserEntity existingByEmail = userRepository.findByEmail(email);
-            if (existingByEmail != null && (existingByEmail.getKeycloakId() == null || existingByEmail.getKeycloakId().isBlank())) {
+            if (existingByEmail != null && isUnlinked(existingByEmail.getKeycloakId())) {
                 existingByEmail.setKeycloakId(kcId);
                 existingByEmail.setName(finalName);
                 existingByEmail.setAdmin(isAdmin);
@@ -161,36 +176,83 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    @Transactional(readOnly = true)
     public List<UserEntity> getAllUsers() { return userRepository.findAll(); }
     public UserEntity getUserById(Long id) { return userRepository.findById(id).orElse(null); }
     public UserEntity getUserByRut(String rut) { return userRepository.findByRut(rut == null ? null : normalizeRut(rut)); }
 
 
+    // Timed by hand: it is mostly called from the commit hook below, which an annotation aspect would not see
     public UserEntity recomputeActiveStatus(String rutUser) {
-        String normalizedRut = rutUser == null ? null : normalizeRut(rutUser);
-        UserEntity u = userRepository.findByRut(normalizedRut);
-        if (u == null) return null;
+        return Metrics.timer("user.recompute-active").record(() -> {
+            String normalizedRut = rutUser == null ? null : normalizeRut(rutUser);
+            UserEntity u = userRepository.findByRut(normalizedRut);
+            if (u == null) return null;
+
+            u.setActive(!loanRepository.hasBlockingLoans(normalizedRut, LocalDate.now()));
+            return userRepository.save(u);
+        });
+    }
+
+    // Same rule as recomputeActiveStatus, read only (e.g. to refuse a new loan)
+    public boolean hasBlockingLoans(String rutUser) {
+        return loanRepository.hasBlockingLoans(normalizeRut(rutUser), LocalDate.now());
+    }
 
-        LocalDate today = LocalDate.now();
+    // Loan writes call this instead of recomputing right away: each RUT is recomputed once, right before the
+    // commit, however many of its loans the transaction touched. Outside a transaction it recomputes now.
+    public void markStatusDirty(String rutUser) {
+        if (rutUser == null) return;
+        String rut = normalizeRut(rutUser);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recomputeActiveStatus(rut);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> dirty = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (dirty == null) {
+            Set<String> ruts = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, ruts);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    for (String r : ruts) recomputeActiveStatus(r);
+                }
 
-        boolean hasOverdue = loanRepository
-                .existsByRutUserAndReturnDateBeforeAndLateReturnDateIsNull(normalizedRut, today);
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(UserService.this);
+                }
+            });
+            dirty = ruts;
+        }
+        dirty.add(rut);
+    }
 
-        boolean hasUnpaidLateFine = loanRepository
-                .existsByRutUserAndLateFineGreaterThanAndLateFinePaidIsFalse(normalizedRut, 0);
+    // One statement checks the limit and counts the loan; false when the user already has `max` active loans
+    @Transactional
+    public boolean takeLoanSlot(UserEntity user, int max) {
+        if (userRepository.incrementLoansBelow(user.getRut(), max) == 0) return false;
+        markCounterWritten(user);
+        return true;
+    }
 
-        boolean hasUnpaidDamage = loanRepository
-                .existsByRutUserAndDamagePenaltyGreaterThanAndDamagePenaltyPaidIsFalse(normalizedRut, 0);
+    // `count` loans of the same user closed together
+    @Transactional
+    public void releaseLoanSlots(UserEntity user, int count) {
+        if (userRepository.decrementLoans(user.getRut(), count) > 0) markCounterWritten(user);
+    }
 
-        boolean shouldBeActive = !(hasOverdue || hasUnpaidLateFine || hasUnpaidDamage);
-        u.setActive(shouldBeActive);
-        return userRepository.save(u);
+    // The counter updates bypass the entity listeners
+    private void markCounterWritten(UserEntity user) {
+        changeSequence.markChanged(ChangeSequenceTracker.CLIENT, List.of(user.getId()));
+        cacheInvalidation.publishAfterCommit("user:" + user.getId());
     }
 
     // Helpers RUT/phone
 
 
-    private String normalizeRut(String rut) {
+    public static String normalizeRut(String rut) {
         if (rut == null) return null;
         String raw = rut.replace(".", "").replace(" ", "").toUpperCase();
         if (!raw.contains("-")) {
@@ -202,7 +264,7 @@ public class UserService {
 
 
 
-    private Integer tryParsePhone(String phone) {
+    static Integer tryParsePhone(String phone) {
         try {
             String digits = phone.replaceAll("[^0-9]", "");
             if (digits.isEmpty()) return null;
@@ -211,4 +273,8 @@ public class UserService {
             return null;
         }
     }
+
+    private static boolean isUnlinked(String keycloakId) {
+        return keycloakId == null || keycloakId.isBlank() || keycloakId.startsWith(PENDING_KEYCLOAK_PREFIX);
+    }
 }
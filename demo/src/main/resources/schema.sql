@@ -0,0 +1,169 @@
+-- Runs after Hibernate's ddl-auto update (spring.jpa.defer-datasource-initialization), every start.
+-- Only objects Hibernate cannot describe from the entities live here; keep every statement idempotent.
+-- The backfills below may scan whole tables, longer than the pool's statement_timeout (connection-init-sql): it is
+-- lifted for this connection, which the pools then evict before serving requests (DataSourceRoutingConfig).
+set statement_timeout = 0;
+
+-- Delta sync: tool, loan and client rows are stamped by ChangeSequenceTracker on every committed write
+create sequence if not exists change_seq;
+alter table tool add column if not exists change_seq bigint;
+alter table loan add column if not exists change_seq bigint;
+alter table client add column if not exists change_seq bigint;
+create index if not exists idx_tool_change_seq on tool (change_seq);
+create index if not exists idx_loan_change_seq on loan (change_seq);
+create index if not exists idx_client_change_seq on client (change_seq);
+-- rows written outside a tracked transaction (JDBC imports, manual fixes) are picked up by the next stamp
+create index if not exists idx_tool_change_seq_pending on tool (id) where change_seq is null;
+create index if not exists idx_loan_change_seq_pending on loan (id) where change_seq is null;
+create index if not exists idx_client_change_seq_pending on client (id) where change_seq is null;
+-- same advisory keys as ChangeSequenceTracker.LOCK_KEYS (one per table) so numbering stays in commit order
+select pg_advisory_lock(1129530706);
+update tool set change_seq = nextval('change_seq') where change_seq is null;
+select pg_advisory_unlock(1129530706);
+select pg_advisory_lock(1129530707);
+update loan set change_seq = nextval('change_seq') where change_seq is null;
+select pg_advisory_unlock(1129530707);
+select pg_advisory_lock(1129530708);
+update client set change_seq = nextval('change_seq') where change_seq is null;
+select pg_advisory_unlock(1129530708);
+
+-- Pooled id sequences (allocationSize 50) replaced identity columns: never hand out an id below an existing row.
+-- The next block starts at last_value + 1, so the sequence is moved forward with nextval until last_value reaches
+-- max(id). Unlike setval this never moves it back past a block another node took meanwhile (at worst one block
+-- is skipped).
+select max(nextval('tool_seq')) from generate_series(1, (
+    select ceil((m.max_id - s.last_value) / p.increment_by::numeric)::int + (case when s.is_called then 0 else 1 end)
+    from tool_seq s, pg_sequences p, (select coalesce(max(id), 0) as max_id from tool) m
+    where p.schemaname = current_schema() and p.sequencename = 'tool_seq'));
+select max(nextval('kardex_seq')) from generate_series(1, (
+    select ceil((m.max_id - s.last_value) / p.increment_by::numeric)::int + (case when s.is_called then 0 else 1 end)
+    from kardex_seq s, pg_sequences p, (select coalesce(max(id), 0) as max_id from kardex) m
+    where p.schemaname = current_schema() and p.sequencename = 'kardex_seq'));
+select max(nextval('loan_seq')) from generate_series(1, (
+    select ceil((m.max_id - s.last_value) / p.increment_by::numeric)::int + (case when s.is_called then 0 else 1 end)
+    from loan_seq s, pg_sequences p, (select coalesce(max(id), 0) as max_id from loan) m
+    where p.schemaname = current_schema() and p.sequencename = 'loan_seq'));
+select max(nextval('loan_item_seq')) from generate_series(1, (
+    select ceil((m.max_id - s.last_value) / p.increment_by::numeric)::int + (case when s.is_called then 0 else 1 end)
+    from loan_item_seq s, pg_sequences p, (select coalesce(max(id), 0) as max_id from loan_item) m
+    where p.schemaname = current_schema() and p.sequencename = 'loan_item_seq'));
+
+-- Tool state and kardex movement type are smallint codes (ToolState / MovementType). Rows written before that only
+-- carry the old text columns, translated here once. The text columns are no longer written and can be dropped later.
+alter table tool add column if not exists initial_state varchar(255);
+alter table tool add column if not exists state_code smallint;
+alter table kardex add column if not exists type varchar(255);
+alter table kardex add column if not exists type_code smallint;
+update tool set state_code = case lower(btrim(initial_state))
+        when 'disponible' then 1
+        when 'prestada' then 2
+        when 'en reparación' then 3
+        when 'en reparacion' then 3
+        when 'dada de baja' then 4
+    end
+where state_code is null and initial_state is not null;
+update kardex set type_code = case lower(btrim(type))
+        when 'ingreso' then 1
+        when 'cambio de estado: disponible' then 2
+        when 'cambio de estado: prestada' then 3
+        when 'cambio de estado: en reparación' then 4
+        when 'cambio de estado: en reparacion' then 4
+        when 'cambio de estado: dada de baja' then 5
+    end
+where type_code is null and type is not null;
+create index if not exists idx_kardex_type_date on kardex (type_code, movement_date);
+
+-- Tool buckets: one row per normalized (name, category, state code). Buckets that differ only in case or surrounding
+-- blanks are merged into the lowest id first (history repointed, stock summed), then the unique index goes on.
+-- A loan with items in two of the merged buckets keeps one item for the merged bucket (loan_item is unique per
+-- loan and tool), the one already on the kept bucket if any, otherwise the lowest id.
+-- Single statement so a failure leaves nothing half merged, and a no-op once the index exists.
+with d as (
+    select id,
+           min(id) over w as keep_id,
+           count(*) over w as n,
+           sum(amount) over w as total
+    from tool
+    where state_code is not null
+    window w as (partition by lower(btrim(name)), lower(btrim(category)), state_code)
+), k as (
+    update kardex set tool_id = d.keep_id from d where kardex.tool_id = d.id and d.id <> d.keep_id returning 1
+), items as (
+    select loan_item.id, loan_item.tool_id = d.keep_id as on_keep, d.keep_id,
+           row_number() over (partition by loan_item.loan_id, d.keep_id
+                              order by (loan_item.tool_id = d.keep_id) desc, loan_item.id) as rn
+    from loan_item join d on loan_item.tool_id = d.id
+    where d.n > 1
+), li as (
+    update loan_item set tool_id = items.keep_id from items where loan_item.id = items.id and items.rn = 1 and not items.on_keep returning 1
+), lid as (
+    delete from loan_item using items where loan_item.id = items.id and items.rn > 1 returning 1
+), t as (
+    update tool set amount = d.total, change_seq = null from d where tool.id = d.id and d.id = d.keep_id and d.n > 1 returning 1
+)
+delete from tool using d where tool.id = d.id and d.id <> d.keep_id;
+-- first version of the key used the state text
+drop index if exists ux_tool_bucket;
+create unique index if not exists ux_tool_bucket_code on tool (lower(btrim(name)), lower(btrim(category)), state_code);
+-- merged buckets were left without a number above
+select pg_advisory_lock(1129530706);
+update tool set change_seq = nextval('change_seq') where change_seq is null;
+select pg_advisory_unlock(1129530706);
+
+-- Open rentals: one row per item of a not yet returned loan, unique per (rut_user, tool_key) (OpenRentalEntity).
+-- Items written before tool_key existed get it from their tool, then the table is resynced with the open loans.
+update loan_item set tool_key = lower(btrim(t.name)) || '|' || lower(btrim(t.category))
+from tool t
+where loan_item.tool_id = t.id and loan_item.tool_key is null;
+delete from open_rental r
+where not exists (select 1 from loan l where l.id = r.loan_id and l.late_return_date is null);
+insert into open_rental (id, rut_user, tool_key, loan_id)
+select nextval('open_rental_seq'), x.rut_user, x.tool_key, x.loan_id
+from (
+    select distinct on (l.rut_user, li.tool_key) l.rut_user, li.tool_key, l.id as loan_id
+    from loan l
+    join loan_item li on li.loan_id = l.id
+    where l.late_return_date is null
+      and li.tool_key is not null
+      and not exists (select 1 from open_rental r where r.rut_user = l.rut_user and r.tool_key = li.tool_key)
+    order by l.rut_user, li.tool_key, l.id
+) x
+on conflict do nothing;
+
+-- One-off data fixes that must not run again on every start (or on every node): each records its name here
+create table if not exists schema_fixup (name varchar(100) primary key, applied_at timestamp not null default now());
+
+-- client.amount_of_loans is kept with in-place increments (UserRepository.incrementLoansBelow). Counters drifted by
+-- the former read-modify-write are recounted from the open loans once, then restamped for delta sync.
+with claim as (
+    insert into schema_fixup (name) values ('client_amount_of_loans_recount') on conflict do nothing returning name
+)
+update client c set amount_of_loans = x.open_loans, change_seq = null
+from (
+    select c2.id, count(l.id) as open_loans
+    from client c2
+    left join loan l on l.rut_user = c2.rut and l.late_return_date is null
+    group by c2.id
+) x
+where exists (select 1 from claim) and c.id = x.id and c.amount_of_loans <> x.open_loans;
+select pg_advisory_lock(1129530708);
+update client set change_seq = nextval('change_seq') where change_seq is null;
+select pg_advisory_unlock(1129530708);
+
+-- Nightly late fine accrual (LateFineAccrualJob) walks the open loans by id
+create index if not exists idx_loan_open_by_id on loan (id, return_date) where late_return_date is null;
+
+-- loan.outstanding_debt (LoanEntity.refreshOutstandingDebt): filled for rows written before it existed.
+-- The debts screen and the eligibility check only read debtor rows through the partial index.
+update loan set outstanding_debt = (case when coalesce(late_fine_paid, false) then 0 else coalesce(late_fine, 0) end)
+                                 + (case when coalesce(damage_penalty_paid, false) then 0 else coalesce(damage_penalty, 0) end),
+                change_seq = null
+where outstanding_debt is null;
+create index if not exists idx_loan_debtors on loan (reservation_date, rut_user) where outstanding_debt > 0;
+select pg_advisory_lock(1129530707);
+update loan set change_seq = nextval('change_seq') where change_seq is null;
+select pg_advisory_unlock(1129530707);
+
+-- Emails are unique ignoring case: the bulk import lowercases them and checks lower(email) through this index
+-- (UserRepository.findExistingEmails). Clients that already differ only in case must be merged by hand first.
+create unique index if not exists ux_client_email_lower on client (lower(email));
@@ -0,0 +1,54 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadDataSourceTest {
+
+    HikariDataSource pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) pool.close();
+    }
+
+    @Test
+    void fullQueue_failsFast_andCountsTheRejection() throws Exception {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:bulkhead;DB_CLOSE_DELAY=-1");
+        pool.setPoolName("reporting");
+        pool.setMaximumPoolSize(1);
+        pool.setConnectionTimeout(5000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BulkheadDataSource bulkhead = new BulkheadDataSource(pool, 1, registry);
+
+        Connection held = bulkhead.getConnection();
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkhead.getConnection();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 3000;
+        while (pool.getHikariPoolMXBean().getThreadsAwaitingConnection() < 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "second request never queued");
+            Thread.sleep(10);
+        }
+
+        // one already waiting: the next one is refused right away instead of waiting connectionTimeout
+        assertThrows(BulkheadDataSource.BulkheadFullException.class, bulkhead::getConnection);
+        assertEquals(1.0, registry.get("datasource.bulkhead.rejected").tag("pool", "reporting").counter().count());
+
+        held.close();
+        waiting.get(3, TimeUnit.SECONDS).close();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// In-memory H2 databases stand in for each pool (and the replica); each one says which it is
+class RoutingDataSourceTest {
+
+    static final String SERVICE_READ = "com.example.demo.services.KardexService.search";
+
+    DataSource transactional = database("transactional");
+    DataSource reporting = database("reporting");
+    DataSource replica = database("replica");
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null, "ROLE_USER"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void withoutReplica_serviceReadsUseReportingPool_everythingElseTransactional() {
+        Router router = new Router(null, Duration.ZERO);
+
+        assertEquals("reporting", router.read(SERVICE_READ));
+        assertEquals("transactional", router.write());
+        // Spring Data's own read-only transactions (findAll, findById...) stay on the transactional pool
+        assertEquals("transactional",
+                router.read("org.springframework.data.jpa.repository.support.SimpleJpaRepository.findAll"));
+        // no transaction at all
+        assertEquals("transactional",
+                new JdbcTemplate(router.dataSource).queryForObject("select name from whoami", String.class));
+    }
+
+    @Test
+    void withReplica_serviceReadsGoToReplica() {
+        Router router = new Router(replica, Duration.ZERO);
+
+        assertEquals("replica", router.read(SERVICE_READ));
+        assertEquals("transactional", router.write());
+    }
+
+    @Test
+    void unreachableReplica_fallsBackToReportingPool() {
+        DataSource missing = new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("Connection refused");
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                throw new SQLException("Connection refused");
+            }
+        };
+        Router router = new Router(missing, Duration.ZERO);
+
+        assertEquals("reporting", router.read(SERVICE_READ));
+        assertEquals("reporting", router.read(SERVICE_READ));
+    }
+
+    @Test
+    void onPrimary_keepsTheReadOffTheReplica() {
+        Router router = new Router(replica, Duration.ZERO);
+
+        assertEquals("reporting", RoutingDataSource.onPrimary(() -> router.read(SERVICE_READ)));
+        assertEquals("replica", router.read(SERVICE_READ));
+    }
+
+    @Test
+    void readYourWrites_keepsTheWriterOnPrimary_only() {
+        Router router = new Router(replica, Duration.ofMinutes(1));
+        assertEquals("replica", router.read(SERVICE_READ));
+
+        router.write();
+        assertEquals("reporting", router.read(SERVICE_READ));
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("bob", null, "ROLE_USER"));
+        assertEquals("replica", router.read(SERVICE_READ));
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("create table if not exists whoami (name varchar(20))");
+        jdbc.execute("delete from whoami");
+        jdbc.update("insert into whoami values (?)", name);
+        return ds;
+    }
+
+    private class Router {
+        final DataSource dataSource;
+        final DataSourceTransactionManager tm;
+
+        Router(DataSource replicaDs, Duration readYourWrites) {
+            dataSource = new LazyConnectionDataSourceProxy(new RoutingDataSource(
+                    transactional, reporting, replicaDs, Duration.ofMinutes(1), readYourWrites));
+            tm = new DataSourceTransactionManager(dataSource);
+        }
+
+        String read(String transactionName) {
+            TransactionTemplate tx = new TransactionTemplate(tm);
+            tx.setReadOnly(true);
+            tx.setName(transactionName);
+            return tx.execute(s -> new JdbcTemplate(dataSource).queryForObject("select name from whoami", String.class));
+        }
+
+        String write() {
+            TransactionTemplate tx = new TransactionTemplate(tm);
+            tx.setName("com.example.demo.services.LoanService.createLoan");
+            return tx.execute(s -> new JdbcTemplate(dataSource).queryForObject("select name from whoami", String.class));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Statement budget assertions, so an N+1 regression fails the build instead of showing up in production.
+ * Both need the counting DataSource, i.e. a test that runs against a real database.
+ */
+public final class SqlStatements {
+
+    private SqlStatements() {}
+
+    // mockMvc.perform(get("/loan/active")).andExpect(SqlStatements.atMost(3))
+    public static ResultMatcher atMost(int max) {
+        return result -> {
+            Object count = result.getRequest().getAttribute(StatementCountingConfig.COUNT_ATTRIBUTE);
+            assertNotNull(count, "request was not counted (is StatementCountingConfig loaded?)");
+            assertTrue((Integer) count <= max,
+                    "expected at most " + max + " SQL statements, request ran " + count);
+        };
+    }
+
+    // SqlStatements.assertAtMost(2, () -> loanService.listActiveLoans(rut))
+    public static int assertAtMost(int max, Runnable work) {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            work.run();
+            assertTrue(scope.count() <= max,
+                    "expected at most " + max + " SQL statements, ran " + scope.count());
+            return scope.count();
+        }
+    }
+}
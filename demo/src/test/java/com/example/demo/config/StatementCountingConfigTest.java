@@ -0,0 +1,95 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StatementCountingConfigTest {
+
+    JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:statements;DB_CLOSE_DELAY=-1");
+        DataSource counted = StatementCountingConfig.wrap(h2, 500);
+        jdbc = new JdbcTemplate(counted);
+        jdbc.execute("create table if not exists item (id int primary key)");
+        jdbc.execute("delete from item");
+    }
+
+    @Test
+    void scopes_countStatements_andNest() {
+        try (StatementCounter.Scope outer = StatementCounter.open()) {
+            jdbc.update("insert into item values (1)");
+            try (StatementCounter.Scope inner = StatementCounter.open()) {
+                jdbc.queryForObject("select count(*) from item", Integer.class);
+                jdbc.queryForObject("select count(*) from item", Integer.class);
+                assertEquals(2, inner.count());
+            }
+            assertEquals(3, outer.count());
+        }
+    }
+
+    @Test
+    void batch_countsAsOneStatement() {
+        int count = SqlStatements.assertAtMost(1, () ->
+                jdbc.batchUpdate("insert into item values (?)", java.util.List.of(
+                        new Object[]{1}, new Object[]{2}, new Object[]{3})));
+        assertEquals(1, count);
+    }
+
+    @Test
+    void assertAtMost_failsOverBudget() {
+        AssertionError error = assertThrows(AssertionError.class, () -> SqlStatements.assertAtMost(1, () -> {
+            for (int i = 0; i < 3; i++) jdbc.queryForObject("select count(*) from item", Integer.class);
+        }));
+        assertTrue(error.getMessage().contains("ran 3"));
+    }
+
+    @Test
+    void filter_recordsCountPerRoute() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new ItemController(jdbc))
+                .addFilters(new StatementCountingConfig.StatementCountFilter(registry, 50))
+                .build();
+
+        mvc.perform(get("/items/2")).andExpect(status().isOk()).andExpect(SqlStatements.atMost(2));
+        mvc.perform(get("/items/1")).andExpect(status().isOk());
+
+        var summary = registry.get("http.server.statements").tag("uri", "/items/{n}").summary();
+        assertEquals(2, summary.count());
+        assertEquals(3, summary.totalAmount());
+        assertThrows(AssertionError.class, () ->
+                mvc.perform(get("/items/3")).andExpect(SqlStatements.atMost(2)));
+    }
+
+    @RestController
+    static class ItemController {
+        private final JdbcTemplate jdbc;
+
+        ItemController(JdbcTemplate jdbc) {
+            this.jdbc = jdbc;
+        }
+
+        // one statement per n, like a lazy association loaded in a loop
+        @GetMapping("/items/{n}")
+        int items(@PathVariable int n) {
+            for (int i = 0; i < n; i++) jdbc.queryForObject("select count(*) from item", Integer.class);
+            return n;
+        }
+    }
+}
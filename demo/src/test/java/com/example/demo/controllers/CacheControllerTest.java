@@ -0,0 +1,55 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.CacheStatsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CacheController.class)
+@Import(CacheControllerTest.MethodSecurityCfg.class)
+class CacheControllerTest {
+
+    @TestConfiguration
+    @EnableMethodSecurity
+    static class MethodSecurityCfg {}
+
+    @Autowired MockMvc mvc;
+
+    @MockitoBean CacheStatsService cacheStatsService;
+
+    @Test
+    void stats_ok_adminRole() throws Exception {
+        given(cacheStatsService.secondLevelCacheStats()).willReturn(Map.of(
+                "statisticsEnabled", true,
+                "regions", List.of(Map.of("region", "com.example.demo.entities.ToolEntity", "hitRatio", 0.5))
+        ));
+
+        mvc.perform(get("/admin/cache/stats")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.statisticsEnabled", is(true)))
+                .andExpect(jsonPath("$.regions[0].hitRatio", is(0.5)));
+    }
+
+    @Test
+    void stats_forbidden_whenNotAdmin() throws Exception {
+        mvc.perform(get("/admin/cache/stats")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isForbidden());
+    }
+}
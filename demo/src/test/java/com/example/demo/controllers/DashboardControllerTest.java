@@ -0,0 +1,57 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.DashboardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(DashboardController.class)
+@Import(DashboardControllerTest.MethodSecurityCfg.class)
+class DashboardControllerTest {
+
+    @TestConfiguration
+    @EnableMethodSecurity
+    static class MethodSecurityCfg {}
+
+    @Autowired MockMvc mvc;
+
+    @MockitoBean DashboardService dashboardService;
+
+    @Test
+    void dashboard_admin_ok() throws Exception {
+        given(dashboardService.current()).willReturn(new DashboardService.Dashboard(
+                4, 1, 2, 2, 3500, Map.of("Disponible", 10L), List.of(), Instant.now()));
+
+        mvc.perform(get("/dashboard")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.openLoans", is(4)))
+                .andExpect(jsonPath("$.outstandingDebt", is(3500)))
+                .andExpect(jsonPath("$.stockByState.Disponible", is(10)));
+    }
+
+    @Test
+    void dashboard_user_forbidden() throws Exception {
+        mvc.perform(get("/dashboard")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(dashboardService);
+    }
+}
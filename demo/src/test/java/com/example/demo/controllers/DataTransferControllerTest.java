@@ -0,0 +1,68 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.BulkCopyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(DataTransferController.class)
+@Import(DataTransferControllerTest.MethodSecurityCfg.class)
+class DataTransferControllerTest {
+
+    @TestConfiguration
+    @EnableMethodSecurity
+    static class MethodSecurityCfg {}
+
+    @Autowired MockMvc mvc;
+
+    @MockitoBean BulkCopyService bulkCopyService;
+
+    @Test
+    void export_unknownTable_badRequest() throws Exception {
+        mvc.perform(get("/admin/data/client/export")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(bulkCopyService);
+    }
+
+    @Test
+    void import_returnsRowCount() throws Exception {
+        given(bulkCopyService.load(eq(BulkCopyService.Table.LOAN), eq(BulkCopyService.Format.CSV), any()))
+                .willReturn(3L);
+
+        mvc.perform(post("/admin/data/loan/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(3));
+    }
+
+    @Test
+    void import_forbidden_whenNotAdmin() throws Exception {
+        mvc.perform(post("/admin/data/loan/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[]{1}))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
 import com.example.demo.services.KardexService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,12 +49,12 @@ class KardexControllerTest {
         KardexEntity e1 = new KardexEntity();
         e1.setId(1L);
         e1.setMovementDate(LocalDate.parse("2025-10-01"));
-        e1.setType("LOAN");
+        e1.setType(MovementType.TO_LOANED);
 
         KardexEntity e2 = new KardexEntity();
         e2.setId(2L);
         e2.setMovementDate(LocalDate.parse("2025-10-02"));
-        e2.setType("RETURN");
+        e2.setType(MovementType.TO_AVAILABLE);
 
         Page<KardexEntity> page = new PageImpl<>(List.of(e1, e2), PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "movementDate")), 2);
 
@@ -87,7 +88,7 @@ class KardexControllerTest {
                 //Spring serialize Page as object with "content", "totalElements", etc.
                 .andExpect(jsonPath("$.content", hasSize(2)))
                 .andExpect(jsonPath("$.content[0].id", is(1)))
-                .andExpect(jsonPath("$.content[0].type", is("LOAN")))
+                .andExpect(jsonPath("$.content[0].type", is("Cambio de estado: Prestada")))
                 .andExpect(jsonPath("$.totalElements", is(2)));
 
         //verify PageRequest
@@ -1,8 +1,6 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.LoanEntity;
-import com.example.demo.repositories.LoanItemRepository;
-import com.example.demo.repositories.LoanRepository;
 import com.example.demo.services.LoanService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,7 +20,9 @@ import java.util.List;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -39,8 +39,6 @@ class LoanControllerTest {
 
     @MockitoBean
     LoanService loanService;
-    @MockitoBean LoanItemRepository loanItemRepository;
-    @MockitoBean LoanRepository loanRepository;
 
     // POST /loan
     @Test
@@ -201,6 +199,50 @@ class LoanControllerTest {
                 .andExpect(jsonPath("$.id", is(3)));
     }
 
+    // POST /loan/return (bulk, ADMIN)
+    @Test
+    void returnLoans_ok_reportsEachLoan() throws Exception {
+        given(loanService.returnLoans(anyList())).willReturn(List.of(
+                new LoanService.BulkResult(7L, true, 1000, 0, null),
+                new LoanService.BulkResult(8L, false, null, null, "Loan not found: 8")));
+
+        mvc.perform(post("/loan/return")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                          [{"loanId":7,"actualReturnDate":"2025-10-07","finePerDay":500},
+                           {"loanId":8,"actualReturnDate":"2025-10-07"}]
+                          """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].ok", is(true)))
+                .andExpect(jsonPath("$[0].lateFine", is(1000)))
+                .andExpect(jsonPath("$[1].ok", is(false)))
+                .andExpect(jsonPath("$[1].error", containsString("not found")));
+    }
+
+    @Test
+    void returnLoans_userRole_forbidden() throws Exception {
+        mvc.perform(post("/loan/return")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(loanService);
+    }
+
+    @Test
+    void payFinesBulk_emptyBody_returns400() throws Exception {
+        given(loanService.payFines(anyList())).willThrow(new IllegalArgumentException("At least one loan is required."));
+
+        mvc.perform(post("/loan/pay-fines")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("At least one loan")));
+    }
+
     //GET /loan/active
     @Test
     void listActive_admin_noRut_callsAllActive() throws Exception {
@@ -247,9 +289,7 @@ class LoanControllerTest {
     void topTools_ok_flagsAndMapping() throws Exception {
         List<Object[]> rows = List.of(new Object[]{"Taladro", 5L}, new Object[]{"Sierra", 3L});
 
-        given(loanItemRepository.topByToolName(eq(true), eq(LocalDate.parse("2025-10-01")),
-                eq(true), eq(LocalDate.parse("2025-10-31")),
-                eq(PageRequest.of(0, 2))))
+        given(loanService.topTools(LocalDate.parse("2025-10-01"), LocalDate.parse("2025-10-31"), 2))
                 .willReturn(rows);
 
         mvc.perform(get("/loan/top")
@@ -265,9 +305,7 @@ class LoanControllerTest {
 
     @Test
     void topTools_defaultLimit_andNoDates() throws Exception {
-        given(loanItemRepository.topByToolName(eq(false), isNull(), eq(false), isNull(),
-                eq(PageRequest.of(0, 10))))
-                .willReturn(List.of());
+        given(loanService.topTools(null, null, 10)).willReturn(List.of());
 
         mvc.perform(get("/loan/top")
                         .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
@@ -275,6 +313,32 @@ class LoanControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    void topTools_notModified_whenETagMatches() throws Exception {
+        given(loanService.version()).willReturn(9L);
+
+        mvc.perform(get("/loan/top")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .header("If-None-Match", "\"loans-9-top10_*_*\""))
+                .andExpect(status().isNotModified());
+
+        verify(loanService, never()).topTools(any(), any(), anyInt());
+    }
+
+    @Test
+    void topTools_otherLimitOrDates_doNotMatchTheETag() throws Exception {
+        given(loanService.version()).willReturn(9L);
+        given(loanService.topTools(LocalDate.parse("2025-10-01"), null, 5)).willReturn(List.of());
+
+        mvc.perform(get("/loan/top")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .param("limit", "5")
+                        .param("start", "2025-10-01")
+                        .header("If-None-Match", "\"loans-9-top10_*_*\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"loans-9-top5_2025-10-01_*\""));
+    }
+
     // GET /loan/debts (ADMIN)
     @Test
     void listLoansWithDebts_ok_admin_buildsPageRequestAndNullRut() throws Exception {
@@ -324,7 +388,7 @@ class LoanControllerTest {
     void listByRut_ok_buildsPageRequest() throws Exception {
         Page<LoanEntity> pg = new PageImpl<>(List.of(),
                 PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "reservationDate")), 0);
-        given(loanRepository.findPageByRutUser(eq("11.111.111-1"),
+        given(loanService.listLoansByUser(eq("11.111.111-1"),
                 eq(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "reservationDate")))))
                 .willReturn(pg);
 
@@ -0,0 +1,67 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.FlightRecordingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(RecordingController.class)
+@Import(RecordingControllerTest.MethodSecurityCfg.class)
+class RecordingControllerTest {
+
+    @TestConfiguration
+    @EnableMethodSecurity
+    static class MethodSecurityCfg {}
+
+    @Autowired MockMvc mvc;
+
+    @MockitoBean FlightRecordingService recordingService;
+
+    @Test
+    void start_admin_ok() throws Exception {
+        given(recordingService.start("profile", Duration.ofMinutes(10))).willReturn(
+                new FlightRecordingService.RecordingStatus("tingeso-profile", "RUNNING", Instant.now(), null,
+                        Duration.ofMinutes(10)));
+
+        mvc.perform(post("/admin/recording/start")
+                        .param("settings", "profile")
+                        .param("maxAgeMinutes", "10")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state", is("RUNNING")));
+    }
+
+    @Test
+    void stop_badRequest_whenNothingRunning() throws Exception {
+        given(recordingService.stop()).willThrow(new IllegalArgumentException("No recording is running."));
+
+        mvc.perform(post("/admin/recording/stop")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("No recording is running."));
+    }
+
+    @Test
+    void start_forbidden_whenNotAdmin() throws Exception {
+        mvc.perform(post("/admin/recording/start")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(recordingService);
+    }
+}
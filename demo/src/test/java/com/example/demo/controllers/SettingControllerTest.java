@@ -14,6 +14,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -48,6 +49,18 @@ class SettingControllerTest {
         verify(settingService).getDailyRentPrice();
     }
 
+    @Test
+    void getDailyRate_notModified_whenETagMatches() throws Exception {
+        given(settingService.version()).willReturn(2L);
+
+        mvc.perform(get("/settings/daily-rate")
+                        .with(jwt())
+                        .header("If-None-Match", "\"settings-2\""))
+                .andExpect(status().isNotModified());
+
+        verify(settingService, never()).getDailyRentPrice();
+    }
+
     //PUT /settings/daily-rate (ADMIN)
     @Test
     void updateDailyRate_ok_adminRole_numericBody() throws Exception {
@@ -0,0 +1,79 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.DeltaSyncService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(SyncController.class)
+@Import(SyncControllerTest.MethodSecurityCfg.class)
+class SyncControllerTest {
+
+    @TestConfiguration
+    @EnableMethodSecurity
+    static class MethodSecurityCfg {}
+
+    @Autowired MockMvc mvc;
+
+    @MockitoBean DeltaSyncService deltaSync;
+
+    @Test
+    void availableTools_ok_userRole() throws Exception {
+        given(deltaSync.availableTools(40L, 500)).willReturn(new DeltaSyncService.Delta<>(
+                42L, false,
+                List.of(new DeltaSyncService.AvailableTool(1L, "Taladro", "Elec", 3, 50000)),
+                List.of(7L)));
+
+        mvc.perform(get("/sync/tools/available")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .param("since", "40"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(42)))
+                .andExpect(jsonPath("$.upserted[0].name", is("Taladro")))
+                .andExpect(jsonPath("$.deleted[0]", is(7)));
+    }
+
+    @Test
+    void availableTools_badRequest_onInvalidSince() throws Exception {
+        given(deltaSync.availableTools(-1L, 500)).willThrow(new IllegalArgumentException("since must be >= 0"));
+
+        mvc.perform(get("/sync/tools/available")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .param("since", "-1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("since")));
+    }
+
+    @Test
+    void activeLoans_userWithoutRut_badRequest() throws Exception {
+        mvc.perform(get("/sync/loans/active")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void activeLoans_ok_adminWithoutRut() throws Exception {
+        given(deltaSync.activeLoans(eq(0L), isNull(), eq(500)))
+                .willReturn(new DeltaSyncService.Delta<>(0L, false, List.of(), List.of()));
+
+        mvc.perform(get("/sync/loans/active")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.upserted", hasSize(0)));
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
 import com.example.demo.entities.UserEntity;
+import com.example.demo.services.ImportSupport;
+import com.example.demo.services.ToolImportService;
 import com.example.demo.services.ToolService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -10,11 +13,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 
@@ -22,6 +28,8 @@ import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -42,6 +50,9 @@ class ToolControllerTest {
     @MockitoBean
     ToolService toolService;
 
+    @MockitoBean
+    ToolImportService toolImportService;
+
     //Controller real Bean
     @Autowired
     ToolController controller;
@@ -53,7 +64,7 @@ class ToolControllerTest {
         saved.setId(100L);
         saved.setName("Taladro");
         saved.setCategory("Eléctricas");
-        saved.setInitialState("GOOD");
+        saved.setInitialState(ToolState.AVAILABLE);
         saved.setRepositionValue(50000);
         saved.setAvailable(true);
         saved.setAmount(5);
@@ -66,7 +77,7 @@ class ToolControllerTest {
                 {
                   "name": "Taladro",
                   "category": "Eléctricas",
-                  "initialState": "GOOD",
+                  "initialState": "Disponible",
                   "repositionValue": 50000,
                   "available": true,
                   "amount": 5
@@ -91,7 +102,7 @@ class ToolControllerTest {
                 .willThrow(new IllegalArgumentException("Tool already exists"));
 
         String toolJson = """
-                {"name":"Taladro","category":"Eléctricas","initialState":"GOOD","repositionValue":50000,"available":true,"amount":5}
+                {"name":"Taladro","category":"Eléctricas","initialState":"Disponible","repositionValue":50000,"available":true,"amount":5}
                 """;
 
         mvc.perform(post("/tool")
@@ -127,41 +138,116 @@ class ToolControllerTest {
         updated.setId(5L);
         updated.setName("Sierra");
         updated.setCategory("Manuales");
-        updated.setInitialState("DAMAGED");
+        updated.setInitialState(ToolState.IN_REPAIR);
         updated.setRepositionValue(20000);
         updated.setAvailable(true);
         updated.setAmount(7);
 
-        given(toolService.updateTool(eq(5L), eq("DAMAGED"), eq(7), eq(20000),
+        given(toolService.updateTool(eq(5L), eq(ToolState.IN_REPAIR), eq(7), eq(20000),
                 argThat(u -> u != null && "11.111.111-1".equals(u.getRut()))))
                 .willReturn(updated);
 
         mvc.perform(put("/tool/{id}", 5L)
                         .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
-                        .param("state", "DAMAGED")
+                        .param("state", "En reparación")
                         .param("amount", "7")
                         .param("repositionValue", "20000")
                         .param("rutUser", "11.111.111-1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id", is(5)))
-                .andExpect(jsonPath("$.initialState", is("DAMAGED")))
+                .andExpect(jsonPath("$.initialState", is("En reparación")))
                 .andExpect(jsonPath("$.amount", is(7)))
                 .andExpect(jsonPath("$.repositionValue", is(20000)));
     }
 
+    @Test
+    void importTools_ok_adminRole() throws Exception {
+        ImportSupport.ImportReport report = new ImportSupport.ImportReport();
+        report.setTotal(3);
+        report.setInserted(3);
+        given(toolImportService.importTools(any(), argThat(u -> u != null && "11.111.111-1".equals(u.getRut()))))
+                .willReturn(report);
+
+        mvc.perform(post("/tool/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("rutUser", "11.111.111-1")
+                        .contentType("text/csv")
+                        .content("name,category,amount,repositionValue\nTaladro,Elec,3,50000\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted", is(3)));
+    }
+
+    @Test
+    void importTools_forbidden_whenNotAdmin() throws Exception {
+        mvc.perform(post("/tool/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .param("rutUser", "11.111.111-1")
+                        .contentType("text/csv")
+                        .content("name,category,amount,repositionValue\n"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void moveUnitsBatch_ok_adminRole() throws Exception {
+        ToolEntity target = new ToolEntity();
+        target.setId(20L);
+        target.setInitialState(ToolState.IN_REPAIR);
+        target.setAmount(40);
+
+        given(toolService.moveUnits(argThat((List<ToolService.Move> ms) -> ms.size() == 1 && ms.get(0).quantity == 40
+                        && ms.get(0).state == ToolState.IN_REPAIR),
+                argThat(u -> u != null && "11.111.111-1".equals(u.getRut()))))
+                .willReturn(List.of(target));
+
+        mvc.perform(post("/tool/moves")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("rutUser", "11.111.111-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"toolId\":10,\"state\":\"En reparación\",\"quantity\":40}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(20)))
+                .andExpect(jsonPath("$[0].amount", is(40)));
+    }
+
+    @Test
+    void moveUnits_badRequest_whenServiceThrowsIAE() throws Exception {
+        given(toolService.moveUnits(eq(10L), eq(ToolState.LOANED), eq(99), org.mockito.ArgumentMatchers.any(UserEntity.class)))
+                .willThrow(new IllegalArgumentException("Not enough stock for tool id=10. Available: 2"));
+
+        mvc.perform(put("/tool/{id}/move", 10L)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("state", "Prestada")
+                        .param("quantity", "99")
+                        .param("rutUser", "11.111.111-1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Not enough stock")));
+    }
+
     @Test
     void updateTool_badRequest_whenServiceThrowsIAE() throws Exception {
-        doThrow(new IllegalArgumentException("Invalid state"))
-                .when(toolService).updateTool(eq(8L), eq("XXX"), eq(1), eq(null),
+        doThrow(new IllegalArgumentException("Cannot move tools from 'Dada de baja' to 'Disponible'."))
+                .when(toolService).updateTool(eq(8L), eq(ToolState.AVAILABLE), eq(1), eq(null),
                         argThat(u -> "22.222.222-2".equals(u.getRut())));
 
         mvc.perform(put("/tool/{id}", 8L)
                         .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
-                        .param("state", "XXX")
+                        .param("state", "Disponible")
                         .param("amount", "1")
                         .param("rutUser", "22.222.222-2"))
                 .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Cannot move tools")));
+    }
+
+    @Test
+    void updateTool_unknownStateLabel_badRequest() throws Exception {
+        mvc.perform(put("/tool/{id}", 8L)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("state", "XXX")
+                        .param("rutUser", "22.222.222-2"))
+                .andExpect(status().isBadRequest())
                 .andExpect(content().string(containsString("Invalid state")));
+
+        verify(toolService, never()).updateTool(any(), any(), any(), any(), any());
     }
 
     @Test
@@ -189,39 +275,67 @@ class ToolControllerTest {
         t.setId(1L);
         t.setName("Martillo");
         t.setCategory("Manuales");
-        t.setInitialState("GOOD");
+        t.setInitialState(ToolState.AVAILABLE);
         t.setRepositionValue(10000);
         t.setAvailable(true);
         t.setAmount(3);
 
         given(toolService.listAvailable()).willReturn(List.of(t));
+        given(toolService.catalogVersion()).willReturn(4L);
 
         mvc.perform(get("/tool/available")
                         .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Catalog-Version", "4"))
+                .andExpect(header().string("ETag", "\"tools-4\""))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].name", is("Martillo")))
                 .andExpect(jsonPath("$[0].available", is(true)));
     }
 
+    @Test
+    void listAvailable_notModified_whenETagMatches() throws Exception {
+        given(toolService.catalogVersion()).willReturn(4L);
+
+        mvc.perform(get("/tool/available")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .header("If-None-Match", "\"tools-4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"tools-4\""));
+
+        verify(toolService, never()).listAvailable();
+    }
+
+    @Test
+    void listNamesWithCategory_staleETag_returnsBody() throws Exception {
+        given(toolService.catalogVersion()).willReturn(5L);
+        given(toolService.getAllNamesWithCategory()).willReturn(List.of());
+
+        mvc.perform(get("/tool/names-categories")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .header("If-None-Match", "\"tools-4\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"tools-5\""));
+    }
+
     @Test
     void listByState_ok_adminRole() throws Exception {
         ToolEntity t = new ToolEntity();
         t.setId(2L);
         t.setName("Serrucho");
         t.setCategory("Manuales");
-        t.setInitialState("DAMAGED");
+        t.setInitialState(ToolState.IN_REPAIR);
         t.setRepositionValue(8000);
         t.setAvailable(false);
         t.setAmount(1);
 
-        given(toolService.listByState("DAMAGED")).willReturn(List.of(t));
+        given(toolService.listByState(ToolState.IN_REPAIR)).willReturn(List.of(t));
 
         mvc.perform(get("/tool/by-state")
                         .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
-                        .param("state", "DAMAGED"))
+                        .param("state", "en reparación"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].initialState", is("DAMAGED")))
+                .andExpect(jsonPath("$[0].initialState", is("En reparación")))
                 .andExpect(jsonPath("$[0].available", is(false)));
     }
 
@@ -239,7 +353,7 @@ class ToolControllerTest {
 
     @Test
     void direct_touchConstructor_forCoverage() {
-        new ToolController(Mockito.mock(ToolService.class));
+        new ToolController(Mockito.mock(ToolService.class), Mockito.mock(ToolImportService.class));
     }
 
     @WithMockUser(roles = "USER")
@@ -288,9 +402,6 @@ class ToolControllerTest {
     @WithMockUser(roles = "ADMIN")
     @Test
     void direct_updateTool_badRequest() {
-        given(toolService.updateTool(eq(8L), eq("XXX"), eq(1), isNull(),org.mockito.ArgumentMatchers.any(UserEntity.class)))
-                .willThrow(new IllegalArgumentException("Invalid state"));
-
         var resp = controller.updateTool(8L, "XXX", 1, null, "22.222.222-2");
         org.junit.jupiter.api.Assertions.assertEquals(400, resp.getStatusCode().value());
         org.junit.jupiter.api.Assertions.assertTrue(resp.getBody().toString().contains("Invalid state"));
@@ -300,7 +411,7 @@ class ToolControllerTest {
     @Test
     void direct_listNamesWithCategory_ok() {
         given(toolService.getAllNamesWithCategory()).willReturn(List.of());
-        var resp = controller.listNamesWithCategory();
+        var resp = controller.listNamesWithCategory(webRequest());
         org.junit.jupiter.api.Assertions.assertEquals(200, resp.getStatusCode().value());
     }
 
@@ -308,15 +419,19 @@ class ToolControllerTest {
     @Test
     void direct_listAvailable_ok() {
         given(toolService.listAvailable()).willReturn(List.of(new ToolEntity()));
-        var resp = controller.listAvailable();
+        var resp = controller.listAvailable(webRequest());
         org.junit.jupiter.api.Assertions.assertEquals(200, resp.getStatusCode().value());
     }
 
     @WithMockUser(roles = "ADMIN")
     @Test
     void direct_listByState_ok() {
-        given(toolService.listByState("DAMAGED")).willReturn(List.of());
-        var resp = controller.listByState("DAMAGED");
+        given(toolService.listByState(ToolState.IN_REPAIR)).willReturn(List.of());
+        var resp = controller.listByState("En reparación");
         org.junit.jupiter.api.Assertions.assertEquals(200, resp.getStatusCode().value());
     }
+
+    private static ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/tool"), new MockHttpServletResponse());
+    }
 }
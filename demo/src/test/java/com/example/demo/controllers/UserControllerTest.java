@@ -1,6 +1,9 @@
 package com.example.demo.controllers;
 
 import com.example.demo.entities.UserEntity;
+import com.example.demo.services.CustomerSummaryService;
+import com.example.demo.services.ImportSupport;
+import com.example.demo.services.UserImportService;
 import com.example.demo.services.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +22,7 @@ import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -35,6 +39,8 @@ class UserControllerTest {
     @Autowired MockMvc mvc;
 
     @MockitoBean UserService userService;
+    @MockitoBean UserImportService userImportService;
+    @MockitoBean CustomerSummaryService customerSummaryService;
 
     // ───────────── POST /users (USER/ADMIN) ─────────────
     @Test
@@ -82,6 +88,49 @@ class UserControllerTest {
                 .andExpect(status().isUnauthorized());
     }
 
+    // ───────────── POST /users/import (ADMIN) ─────────────
+    @Test
+    void importUsers_ok_adminRole_csv() throws Exception {
+        ImportSupport.ImportReport report = new ImportSupport.ImportReport();
+        report.setTotal(2);
+        report.setInserted(1);
+        report.getErrors().add(new ImportSupport.RowError(3, "User with this email already exists."));
+
+        given(userImportService.importUsers(org.mockito.ArgumentMatchers.any(), eq(UserImportService.Format.CSV)))
+                .willReturn(report);
+
+        mvc.perform(post("/users/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType("text/csv")
+                        .content("email,name\nana@example.com,Ana\nold@example.com,Old\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(2)))
+                .andExpect(jsonPath("$.inserted", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)));
+    }
+
+    @Test
+    void importUsers_usesNdjson_whenContentTypeSaysSo() throws Exception {
+        given(userImportService.importUsers(org.mockito.ArgumentMatchers.any(), eq(UserImportService.Format.NDJSON)))
+                .willReturn(new ImportSupport.ImportReport());
+
+        mvc.perform(post("/users/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType("application/x-ndjson")
+                        .content("{\"email\":\"ana@example.com\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted", is(0)));
+    }
+
+    @Test
+    void importUsers_forbidden_whenNotAdmin() throws Exception {
+        mvc.perform(post("/users/import")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .contentType("text/csv")
+                        .content("email\n"))
+                .andExpect(status().isForbidden());
+    }
+
     // ───────────── GET /users (USER/ADMIN) ─────────────
     @Test
     void getAllUsers_ok_userRole() throws Exception {
@@ -236,4 +285,39 @@ class UserControllerTest {
                         .param("active", "true"))
                 .andExpect(status().isUnauthorized());
     }
+
+    // ───────────── GET /users/{rut}/summary (USER/ADMIN) ─────────────
+    @Test
+    void getSummary_ok() throws Exception {
+        given(customerSummaryService.summaryOf("11111111-1")).willReturn(new CustomerSummaryService.CustomerSummary(
+                "11111111-1", "Ana", 2, 1, 1500, 0, 1500, false, false));
+
+        mvc.perform(get("/users/{rut}/summary", "11111111-1")
+                        .with(jwt().jwt(j -> j.claim("rut", "11111111-1"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.openLoans", is(2)))
+                .andExpect(jsonPath("$.overdueLoans", is(1)))
+                .andExpect(jsonPath("$.totalDebt", is(1500)))
+                .andExpect(jsonPath("$.canBorrow", is(false)));
+    }
+
+    @Test
+    void getSummary_unknownRut_404() throws Exception {
+        given(customerSummaryService.summaryOf("1-9")).willReturn(null);
+
+        mvc.perform(get("/users/{rut}/summary", "1-9")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getSummary_otherCustomersRut_asUser_returns403() throws Exception {
+        mvc.perform(get("/users/{rut}/summary", "22222222-2")
+                        .with(jwt().jwt(j -> j.claim("rut", "11111111-1"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(customerSummaryService);
+    }
 }
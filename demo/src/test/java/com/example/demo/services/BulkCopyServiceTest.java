@@ -0,0 +1,96 @@
+package com.example.demo.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Runs the non-PostgreSQL path against an in-memory H2 database
+class BulkCopyServiceTest {
+
+    JdbcTemplate jdbc;
+    ChangeCounterService changeCounters;
+    BulkCopyService bulkCopy;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource ds = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("create table kardex (id bigint primary key, tool_id bigint, rut_user varchar(20), "
+                + "type_code smallint, movement_date date, stock int, quantity int)");
+        jdbc.execute("create table loan (id bigint primary key, rut_user varchar(20), reservation_date date, "
+                + "return_date date, late_return_date date, total int, late_fine int, damage_penalty int, "
+                + "late_fine_paid boolean, damage_penalty_paid boolean, amount_of_tools int)");
+        changeCounters = mock(ChangeCounterService.class);
+        bulkCopy = new BulkCopyService(ds, changeCounters);
+    }
+
+    @Test
+    void exportThenLoad_roundTripsRows_includingNullsAndQuotes() throws Exception {
+        jdbc.update("insert into kardex values (1, 10, '1-9', 1, date '2025-01-02', 5, 5)");
+        jdbc.update("insert into kardex values (2, 10, 'a,\"b\";c', 4, date '2025-01-03', 4, null)");
+        jdbc.update("insert into kardex values (3, 11, null, 2, date '2025-01-03', 1, 1)");
+
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        assertEquals(3, bulkCopy.export(BulkCopyService.Table.KARDEX, BulkCopyService.Format.CSV, dump));
+
+        List<Map<String, Object>> before = jdbc.queryForList("select * from kardex order by id");
+        jdbc.update("delete from kardex");
+
+        long loaded = bulkCopy.load(BulkCopyService.Table.KARDEX, BulkCopyService.Format.CSV,
+                new ByteArrayInputStream(dump.toByteArray()));
+
+        assertEquals(3, loaded);
+        assertEquals(before, jdbc.queryForList("select * from kardex order by id"));
+        verifyNoInteractions(changeCounters); // kardex is not behind any counter
+    }
+
+    @Test
+    void load_loans_marksLoansChanged() throws Exception {
+        jdbc.update("insert into loan values (7, '1-9', date '2025-01-01', date '2025-01-05', null, "
+                + "10000, 0, 0, true, false, 1)");
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        bulkCopy.export(BulkCopyService.Table.LOAN, BulkCopyService.Format.CSV, dump);
+        jdbc.update("delete from loan");
+
+        bulkCopy.load(BulkCopyService.Table.LOAN, BulkCopyService.Format.CSV, new ByteArrayInputStream(dump.toByteArray()));
+
+        assertEquals(Boolean.FALSE, jdbc.queryForObject("select damage_penalty_paid from loan where id = 7", Boolean.class));
+        assertNull(jdbc.queryForObject("select late_return_date from loan where id = 7", Object.class));
+        verify(changeCounters).markChanged(ChangeCounterService.Aggregate.LOANS);
+    }
+
+    @Test
+    void load_badRow_rollsBackWholeFile() throws Exception {
+        jdbc.update("insert into kardex values (1, 10, '1-9', 1, date '2025-01-02', 5, 5)");
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        bulkCopy.export(BulkCopyService.Table.KARDEX, BulkCopyService.Format.CSV, dump);
+
+        // id 1 is still there: the insert fails and nothing is kept
+        assertThrows(Exception.class, () -> bulkCopy.load(BulkCopyService.Table.KARDEX,
+                BulkCopyService.Format.CSV, new ByteArrayInputStream(dump.toByteArray())));
+        assertEquals(1, jdbc.queryForObject("select count(*) from kardex", Integer.class));
+    }
+
+    @Test
+    void binaryFormat_withoutPostgres_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> bulkCopy.export(BulkCopyService.Table.KARDEX,
+                BulkCopyService.Format.BINARY, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void tableOf_unknown_throws() {
+        assertEquals(BulkCopyService.Table.LOAN_ITEM, BulkCopyService.Table.of("loan_item"));
+        assertThrows(IllegalArgumentException.class, () -> BulkCopyService.Table.of("client"));
+    }
+}
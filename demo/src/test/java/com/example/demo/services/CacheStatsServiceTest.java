@@ -0,0 +1,63 @@
+package com.example.demo.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class CacheStatsServiceTest {
+
+    @Mock EntityManagerFactory entityManagerFactory;
+    @Mock SessionFactory sessionFactory;
+    @Mock Statistics statistics;
+    @Mock CacheRegionStatistics toolRegion;
+
+    CacheStatsService cacheStatsService;
+
+    // SessionFactory is itself an EntityManagerFactory, so @InjectMocks would pick the wrong mock
+    @BeforeEach
+    void setUp() {
+        cacheStatsService = new CacheStatsService(entityManagerFactory);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void secondLevelCacheStats_reportsRegionsAndQueryCache() {
+        given(entityManagerFactory.unwrap(SessionFactory.class)).willReturn(sessionFactory);
+        given(sessionFactory.getStatistics()).willReturn(statistics);
+        given(statistics.isStatisticsEnabled()).willReturn(true);
+        given(statistics.getSecondLevelCacheRegionNames())
+                .willReturn(new String[]{"com.example.demo.entities.ToolEntity"});
+        given(statistics.getCacheRegionStatistics("com.example.demo.entities.ToolEntity")).willReturn(toolRegion);
+        given(toolRegion.getHitCount()).willReturn(3L);
+        given(toolRegion.getMissCount()).willReturn(1L);
+        given(statistics.getQueryCacheHitCount()).willReturn(0L);
+        given(statistics.getQueryCacheMissCount()).willReturn(0L);
+
+        Map<String, Object> out = cacheStatsService.secondLevelCacheStats();
+
+        List<Map<String, Object>> regions = (List<Map<String, Object>>) out.get("regions");
+        assertEquals(1, regions.size());
+        assertEquals(0.75, (double) regions.get(0).get("hitRatio"), 1e-9);
+        assertEquals(0.0, (double) ((Map<String, Object>) out.get("queryCache")).get("hitRatio"), 1e-9);
+        assertEquals(true, out.get("statisticsEnabled"));
+    }
+
+    @Test
+    void hitRatio_handlesNoTraffic() {
+        assertEquals(0.0, CacheStatsService.hitRatio(0, 0));
+        assertEquals(0.5, CacheStatsService.hitRatio(1, 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerSummaryServiceTest {
+
+    @Mock UserRepository userRepository;
+    @Mock UserRepository.SummaryRow row;
+
+    CustomerSummaryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CustomerSummaryService(userRepository, 60);
+    }
+
+    @Test
+    void summaryOf_computesEligibility_andCachesPerRut() {
+        given(row.getRut()).willReturn("11111111-1");
+        given(row.getOpenLoans()).willReturn(2L);
+        given(row.getOverdueLoans()).willReturn(0L);
+        given(row.getUnpaidLateFines()).willReturn(0L);
+        given(row.getUnpaidDamage()).willReturn(3000L);
+        given(userRepository.summarize(eq("11111111-1"), any())).willReturn(Optional.of(row));
+
+        CustomerSummaryService.CustomerSummary s = service.summaryOf("11.111.111-1");
+        assertEquals(2, s.getOpenLoans());
+        assertEquals(3000, s.getTotalDebt());
+        assertFalse(s.isActive());
+        assertFalse(s.isCanBorrow());
+
+        // same customer, other formatting: served from the cache
+        assertSame(s, service.summaryOf("11111111-1"));
+        verify(userRepository, times(1)).summarize(eq("11111111-1"), any());
+    }
+
+    @Test
+    void loanEvent_evictsThatCustomer() {
+        given(userRepository.summarize(eq("11111111-1"), any())).willReturn(Optional.of(row));
+
+        service.summaryOf("11111111-1");
+        service.onLoansChanged(new LoansChangedEvent("11.111.111-1", 5L, LoansChangedEvent.Kind.FINES_PAID));
+        service.summaryOf("11111111-1");
+
+        verify(userRepository, times(2)).summarize(eq("11111111-1"), any());
+    }
+
+    @Test
+    void summaryOf_unknownRut_returnsNull() {
+        given(userRepository.summarize(eq("1-9"), any())).willReturn(Optional.empty());
+        assertNull(service.summaryOf("1-9"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.repositories.LoanItemRepository;
+import com.example.demo.repositories.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DashboardServiceTest {
+
+    @Mock LoanRepository loanRepository;
+    @Mock LoanItemRepository loanItemRepository;
+    @Mock ToolCatalog toolCatalog;
+    @Mock LoanRepository.LoanTotals totals;
+
+    @Test
+    void current_combinesFigures_andCachesThem() {
+        stubSources();
+        DashboardService service = new DashboardService(loanRepository, loanItemRepository, toolCatalog, 60_000);
+
+        DashboardService.Dashboard d = service.current();
+
+        assertEquals(4, d.getOpenLoans());
+        assertEquals(1, d.getOverdueLoans());
+        assertEquals(3L, d.getStockByState().get(ToolState.AVAILABLE.label()));
+        assertEquals(2L, d.getStockByState().get(ToolState.IN_REPAIR.label()));
+        assertEquals(0L, d.getStockByState().get(ToolState.WRITTEN_OFF.label()));
+        assertEquals("Taladro", d.getTopTools().get(0).get("tool"));
+
+        assertSame(d, service.current());
+        verify(loanRepository, times(1)).loanTotals(any());
+    }
+
+    @Test
+    void current_concurrentRefreshes_shareOneComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        stubSources();
+        given(loanRepository.loanTotals(any())).willAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return totals;
+        });
+        DashboardService service = new DashboardService(loanRepository, loanItemRepository, toolCatalog, 60_000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DashboardService.Dashboard>> calls = new java.util.ArrayList<>();
+            for (int i = 0; i < 8; i++) calls.add(pool.submit(service::current));
+            Thread.sleep(100);
+            release.countDown();
+            DashboardService.Dashboard first = calls.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<DashboardService.Dashboard> f : calls) assertSame(first, f.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(loanRepository, times(1)).loanTotals(any());
+    }
+
+    private void stubSources() {
+        given(totals.getOpenLoans()).willReturn(4L);
+        given(totals.getOverdueLoans()).willReturn(1L);
+        given(loanRepository.loanTotals(any())).willReturn(totals);
+
+        ToolEntity drill = new ToolEntity(); drill.setAmount(3);
+        ToolEntity saw = new ToolEntity(); saw.setAmount(2);
+        given(toolCatalog.current()).willReturn(new ToolCatalog.Snapshot(1L, Map.of(), List.of(drill), List.of(),
+                Map.of(ToolState.IN_REPAIR, List.of(saw))));
+        given(loanItemRepository.topByToolName(anyBoolean(), any(), anyBoolean(), any(), any()))
+                .willReturn(List.<Object[]>of(new Object[]{"Taladro", 7L}));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.demo.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class DeltaSyncServiceTest {
+
+    @Mock JdbcTemplate jdbcTemplate;
+
+    @InjectMocks DeltaSyncService deltaSync;
+
+    @Test
+    void toDelta_splitsUpsertedAndDeleted_andAdvancesVersion() {
+        List<DeltaSyncService.Change<String>> rows = List.of(
+                new DeltaSyncService.Change<>(11, 1L, true, "a"),
+                new DeltaSyncService.Change<>(12, 2L, false, "b"), // no longer in the listing
+                new DeltaSyncService.Change<>(15, 3L, true, "c"));
+
+        DeltaSyncService.Delta<String> delta = DeltaSyncService.toDelta(10, 500, rows);
+
+        assertEquals(15, delta.version());
+        assertFalse(delta.hasMore());
+        assertEquals(List.of("a", "c"), delta.upserted());
+        assertEquals(List.of(2L), delta.deleted());
+    }
+
+    @Test
+    void toDelta_noChanges_keepsVersion_andFullPageMeansMore() {
+        assertEquals(7, DeltaSyncService.toDelta(7, 10, List.<DeltaSyncService.Change<String>>of()).version());
+
+        DeltaSyncService.Delta<String> full = DeltaSyncService.toDelta(0, 1,
+                List.of(new DeltaSyncService.Change<>(1, 1L, true, "a")));
+        assertTrue(full.hasMore());
+    }
+
+    @Test
+    void availableTools_negativeSince_throws() {
+        assertThrows(IllegalArgumentException.class, () -> deltaSync.availableTools(-1, 10));
+        assertThrows(IllegalArgumentException.class, () -> deltaSync.activeLoans(0, null, 0));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.services;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingServiceTest {
+
+    FlightRecordingService service = new FlightRecordingService();
+
+    @AfterEach
+    void tearDown() {
+        if ("RUNNING".equals(service.status().getState())) service.stop();
+    }
+
+    @Test
+    void startStopDump_containsLoanEvents() throws Exception {
+        assertEquals("NONE", service.status().getState());
+        assertEquals("RUNNING", service.start("default", Duration.ofMinutes(5)).getState());
+
+        FlightEvents.LoanCreated created = new FlightEvents.LoanCreated();
+        created.begin();
+        created.loanId = 10L;
+        created.rutUser = "11.111.111-1";
+        created.items = 2;
+        created.commit();
+
+        assertEquals("STOPPED", service.stop().getState());
+        Path file = service.dump();
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent loan = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("tingeso.LoanCreated"))
+                    .findFirst().orElseThrow();
+            assertEquals(10L, loan.getLong("loanId"));
+            assertEquals(2, loan.getInt("items"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void start_rejectsSecondRecording_andUnknownSettings() {
+        assertThrows(IllegalArgumentException.class, () -> service.start("no-such-settings", null));
+        service.start(null, null);
+        assertThrows(IllegalArgumentException.class, () -> service.start("default", null));
+    }
+
+    @Test
+    void stopAndDump_failWithoutRecording() {
+        assertThrows(IllegalArgumentException.class, service::stop);
+        assertThrows(IllegalArgumentException.class, service::dump);
+    }
+}
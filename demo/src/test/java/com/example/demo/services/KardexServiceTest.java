@@ -1,6 +1,7 @@
 package com.example.demo.services;
 
 import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
 import com.example.demo.repositories.KardexRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,6 +18,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 class KardexServiceTest {
@@ -32,7 +34,7 @@ class KardexServiceTest {
         // given
         Long toolId = 5L;
         String rut = "11.111.111-1";
-        String type = "LOAN";
+        String type = "cambio de estado: prestada";
         LocalDate start = LocalDate.of(2025, 10, 1);
         LocalDate end   = LocalDate.of(2025, 10, 31);
         String name = "Taladro";
@@ -56,7 +58,7 @@ class KardexServiceTest {
         // capture and verify mapping/normalization
         ArgumentCaptor<Long> aToolId = ArgumentCaptor.forClass(Long.class);
         ArgumentCaptor<String> aRut = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> aTypeLower = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MovementType> aType = ArgumentCaptor.forClass(MovementType.class);
         ArgumentCaptor<Boolean> aHasFrom = ArgumentCaptor.forClass(Boolean.class);
         ArgumentCaptor<LocalDate> aStart = ArgumentCaptor.forClass(LocalDate.class);
         ArgumentCaptor<Boolean> aHasTo = ArgumentCaptor.forClass(Boolean.class);
@@ -66,7 +68,7 @@ class KardexServiceTest {
         ArgumentCaptor<Pageable> aPageable = ArgumentCaptor.forClass(Pageable.class);
 
         verify(kardexRepository).search(
-                aToolId.capture(), aRut.capture(), aTypeLower.capture(),
+                aToolId.capture(), aRut.capture(), aType.capture(),
                 aHasFrom.capture(), aStart.capture(),
                 aHasTo.capture(), aEnd.capture(),
                 aNamePat.capture(), aCatPat.capture(),
@@ -75,7 +77,7 @@ class KardexServiceTest {
 
         assertEquals(toolId, aToolId.getValue());
         assertEquals(rut, aRut.getValue());
-        assertEquals("loan", aTypeLower.getValue());           // lower-case
+        assertEquals(MovementType.TO_LOANED, aType.getValue()); // label, any case
         assertTrue(aHasFrom.getValue());
         assertEquals(start, aStart.getValue());
         assertTrue(aHasTo.getValue());
@@ -108,24 +110,34 @@ class KardexServiceTest {
         assertSame(expected, out);
 
         // verify normalization
-        ArgumentCaptor<String> aTypeLower = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MovementType> aType = ArgumentCaptor.forClass(MovementType.class);
         ArgumentCaptor<Boolean> aHasFrom = ArgumentCaptor.forClass(Boolean.class);
         ArgumentCaptor<Boolean> aHasTo = ArgumentCaptor.forClass(Boolean.class);
         ArgumentCaptor<String> aNamePat = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> aCatPat = ArgumentCaptor.forClass(String.class);
 
         verify(kardexRepository).search(
-                any(), any(), aTypeLower.capture(),
+                any(), any(), aType.capture(),
                 aHasFrom.capture(), any(),
                 aHasTo.capture(), any(),
                 aNamePat.capture(), aCatPat.capture(),
                 any()
         );
 
-        assertEquals("", aTypeLower.getValue());
+        assertNull(aType.getValue());
         assertFalse(aHasFrom.getValue());
         assertFalse(aHasTo.getValue());
         assertEquals("", aNamePat.getValue());
         assertEquals("", aCatPat.getValue());
     }
+
+    @Test
+    void search_unknownType_returnsEmptyPage_withoutQuery() {
+        Pageable pr = PageRequest.of(0, 10);
+
+        Page<KardexEntity> out = kardexService.search(null, null, "LOAN", null, null, null, null, pr);
+
+        assertTrue(out.isEmpty());
+        verifyNoInteractions(kardexRepository);
+    }
 }
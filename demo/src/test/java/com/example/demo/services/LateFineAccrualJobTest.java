@@ -0,0 +1,67 @@
+package com.example.demo.services;
+
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LateFineAccrualJobTest {
+
+    @Mock DataSource dataSource;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock SettingService settingService;
+    @Mock ChangeSequenceTracker changeSequence;
+    @Mock ChangeCounterService changeCounters;
+    @Mock CacheInvalidationPublisher cacheInvalidation;
+    @Mock EntityManagerFactory entityManagerFactory;
+    @Mock CustomerSummaryService customerSummaries;
+
+    @InjectMocks LateFineAccrualJob job;
+
+    @Test
+    void accrueNightly_rateZero_doesNothing() {
+        given(settingService.getDailyFineRate()).willReturn(0);
+
+        job.accrueNightly();
+
+        verifyNoInteractions(dataSource, jdbcTemplate, changeCounters);
+    }
+
+    @Test
+    void accrueNightly_lockHeldByAnotherNode_skips() throws Exception {
+        given(settingService.getDailyFineRate()).willReturn(500);
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        given(dataSource.getConnection()).willReturn(conn);
+        given(conn.isWrapperFor(PGConnection.class)).willReturn(true);
+        given(conn.prepareStatement(anyString())).willReturn(ps);
+        given(ps.executeQuery()).willReturn(rs);
+        given(rs.next()).willReturn(true);
+        given(rs.getBoolean(1)).willReturn(false);
+
+        job.accrueNightly();
+
+        verify(ps).setLong(1, LateFineAccrualJob.LOCK_KEY);
+        verifyNoInteractions(jdbcTemplate, changeCounters);
+        verify(conn).close();
+    }
+}
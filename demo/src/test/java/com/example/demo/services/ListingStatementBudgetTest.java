@@ -0,0 +1,158 @@
+package com.example.demo.services;
+
+import com.example.demo.config.SqlStatements;
+import com.example.demo.config.StatementCountingConfig;
+import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.LoanEntity;
+import com.example.demo.entities.LoanItemEntity;
+import com.example.demo.entities.MovementType;
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Statement budgets of the listings behind /loan/active, /loan/debts, /loan/overdue and /kardex, on H2 with real
+// rows. Everything the JSON reads (items, their tools) is walked inside the budget, so an N+1 fails here.
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@ImportAutoConfiguration(PropertyPlaceholderAutoConfiguration.class) // resolves the counting proxy's @Value
+@Import({LoanService.class, KardexService.class, StatementCountingConfig.class,
+        ListingStatementBudgetTest.Metrics.class})
+class ListingStatementBudgetTest {
+
+    static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired EntityManager em;
+    @Autowired LoanService loanService;
+    @Autowired KardexService kardexService;
+
+    @MockitoBean ToolService toolService;
+    @MockitoBean UserService userService;
+    @MockitoBean SettingService settingService;
+    @MockitoBean ChangeCounterService changeCounters;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 6; i++) {
+            ToolEntity a = tool("Taladro " + i);
+            ToolEntity b = tool("Sierra " + i);
+            LoanEntity loan = new LoanEntity();
+            loan.setRutUser("1111111" + (i % 3) + "-1");
+            loan.setReservationDate(TODAY.minusDays(10));
+            loan.setReturnDate(i < 4 ? TODAY.minusDays(2) : TODAY.plusDays(2)); // four overdue
+            loan.setLateFine(i % 2 == 0 ? 1000 : 0);                             // three with debt
+            loan.addItem(item(a));
+            loan.addItem(item(b));
+            em.persist(loan);
+            em.persist(kardex(a));
+            em.persist(kardex(b));
+        }
+        // nothing may come from the persistence context: every row read below is read from the database
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void activeLoans_oneStatement() {
+        SqlStatements.assertAtMost(1, () -> assertEquals(12, toolNames(loanService.listAllActiveLoans())));
+        SqlStatements.assertAtMost(1, () -> assertEquals(4, toolNames(loanService.listActiveLoans("11111110-1"))));
+    }
+
+    @Test
+    void debts_idsCountAndOneFetch() {
+        PageRequest page = PageRequest.of(0, 12, Sort.by(Sort.Direction.DESC, "reservationDate"));
+        SqlStatements.assertAtMost(3, () -> {
+            Page<LoanEntity> out = loanService.listLoansWithUnpaidDebts(null, null, null, page);
+            assertEquals(3, out.getTotalElements());
+            assertEquals(6, toolNames(out.getContent()));
+        });
+    }
+
+    @Test
+    void overdue_idsCountAndOneFetch() {
+        PageRequest page = PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "returnDate"));
+        SqlStatements.assertAtMost(3, () -> {
+            Page<LoanEntity> out = loanService.listOverdueLoans(null, page);
+            assertEquals(4, out.getTotalElements());
+            assertEquals(4, toolNames(out.getContent()));
+        });
+    }
+
+    @Test
+    void kardex_rowsWithToolsAndCount() {
+        PageRequest page = PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "movementDate"));
+        SqlStatements.assertAtMost(2, () -> {
+            Page<KardexEntity> out = kardexService.search(null, null, null, null, null, null, null, page);
+            assertEquals(12, out.getTotalElements());
+            assertEquals(5, out.getContent().stream().map(k -> k.getTool().getName()).count());
+        });
+    }
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    //Helpers
+
+    // What the JSON of a loan reads: its items and each item's tool
+    private static int toolNames(List<LoanEntity> loans) {
+        int n = 0;
+        for (LoanEntity loan : loans) {
+            for (LoanItemEntity item : loan.getItems()) {
+                if (item.getTool().getName() != null) n++;
+            }
+        }
+        return n;
+    }
+
+    private ToolEntity tool(String name) {
+        ToolEntity t = new ToolEntity();
+        t.setName(name);
+        t.setCategory("Elec");
+        t.setInitialState(ToolState.LOANED);
+        t.setRepositionValue(1000);
+        t.setAmount(1);
+        em.persist(t);
+        return t;
+    }
+
+    private static LoanItemEntity item(ToolEntity tool) {
+        LoanItemEntity li = new LoanItemEntity();
+        li.setTool(tool);
+        li.setToolNameSnapshot(tool.getName());
+        li.setToolKey(LoanItemEntity.keyOf(tool.getName(), tool.getCategory()));
+        return li;
+    }
+
+    private static KardexEntity kardex(ToolEntity tool) {
+        KardexEntity k = new KardexEntity();
+        k.setTool(tool);
+        k.setRutUser("11111110-1");
+        k.setType(MovementType.TO_LOANED);
+        k.setMovementDate(TODAY);
+        k.setStock(1);
+        return k;
+    }
+}
@@ -2,11 +2,17 @@ package com.example.demo.services;
 
 import com.example.demo.entities.LoanEntity;
 import com.example.demo.entities.LoanItemEntity;
+import com.example.demo.entities.OpenRentalEntity;
 import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
 import com.example.demo.entities.UserEntity;
+import com.example.demo.repositories.LoanItemRepository;
 import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.OpenRentalRepository;
 import com.example.demo.repositories.ToolRepository;
 import com.example.demo.repositories.UserRepository;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,11 +34,15 @@ import static org.mockito.Mockito.*;
 class LoanServiceTest {
 
     @Mock LoanRepository loanRepository;
+    @Mock LoanItemRepository loanItemRepository;
+    @Mock OpenRentalRepository openRentalRepository;
     @Mock ToolRepository toolRepository;
     @Mock UserRepository userRepository;
     @Mock ToolService toolService;
     @Mock UserService userService;
     @Mock SettingService settingService;
+    @Mock org.springframework.context.ApplicationEventPublisher eventPublisher;
+    @Mock ChangeCounterService changeCounters;
 
     @InjectMocks LoanService loanService;
 
@@ -58,19 +68,18 @@ class LoanServiceTest {
                 .willReturn(user)        // 1ra consulta
                 .willReturn(user);       // 2da consulta (refreshed)
         // does not exceed maximum of 5
-        given(loanRepository.countByRutUserAndLateReturnDateIsNull("11.111.111-1")).willReturn(0L);
+        given(userService.takeLoanSlot(user, 5)).willReturn(true);
         // daily price
         given(settingService.getDailyRentPrice()).willReturn(2000);
 
         // tool "Disponible" with enough stock
-        ToolEntity disponible = tool(100L, "Taladro", "Elec", "Disponible", 3, 50000, true);
+        ToolEntity disponible = tool(100L, "Taladro", "Elec", ToolState.AVAILABLE, 3, 50000, true);
         given(toolRepository.findById(100L)).willReturn(Optional.of(disponible));
-        // no “Prestada” of the same name/category
-        given(toolRepository.findIdsByNameCategoryAndState("Taladro", "Elec", "Prestada"))
-                .willReturn(List.of());
+        // no open rental of the same name/category
+        given(openRentalRepository.findRentedKeys("11.111.111-1", Set.of("taladro|elec"))).willReturn(List.of());
         // update to Prestada returns the entity in Borrowed (id can be the same or a different bucket)
-        ToolEntity prestada = tool(200L, "Taladro", "Elec", "Prestada", 3, 50000, false);
-        given(toolService.updateTool(eq(100L), eq("Prestada"), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class)))
+        ToolEntity prestada = tool(200L, "Taladro", "Elec", ToolState.LOANED, 3, 50000, false);
+        given(toolService.updateTool(eq(100L), eq(ToolState.LOANED), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class)))
                 .willReturn(prestada);
 
         // save returns the same entity with assigned id
@@ -95,10 +104,30 @@ class LoanServiceTest {
         // item added with tool "prestada"
         assertThat(out.getItems(), hasSize(1));
         assertEquals(200L, out.getItems().get(0).getTool().getId());
+        assertEquals("taladro|elec", out.getItems().get(0).getToolKey());
+        verify(openRentalRepository).saveAllAndFlush(
+                List.of(new OpenRentalEntity(null, "11.111.111-1", "taladro|elec", 10L)));
+
+        // loan slot taken with the atomic counter update, no user save with a read-modified amount
+        verify(userService).takeLoanSlot(user, 5);
+        verify(userRepository, never()).save(org.mockito.ArgumentMatchers.any(UserEntity.class));
+        verify(userService).markStatusDirty("11.111.111-1");
+        verify(userService, never()).recomputeActiveStatus(anyString());
+        verify(eventPublisher).publishEvent(new LoansChangedEvent("11.111.111-1", 10L, LoansChangedEvent.Kind.CREATED));
+    }
 
-        //increased user loan counter and recompute called
-        verify(userRepository).save(argThat(u -> u.getAmountOfLoans() == 1));
-        verify(userService, times(2)).recomputeActiveStatus("11.111.111-1");
+    @Test
+    void createLoan_timesEachSubStep() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            createLoan_ok();
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+        for (String phase : List.of("validation", "eligibility", "items", "rental-check", "stock-move", "persist")) {
+            assertEquals(1, registry.get("loan.create.phase").tag("phase", phase).timer().count(), phase);
+        }
     }
 
     //createLoan: validations
@@ -132,8 +161,9 @@ class LoanServiceTest {
     }
 
     @Test
-    void createLoan_fails_userInactiveAfterRecompute() {
-        given(userRepository.findByRut("11.111.111-1")).willReturn(user).willReturn(inactiveUser());
+    void createLoan_fails_whenUserHasBlockingLoans() {
+        given(userRepository.findByRut("11.111.111-1")).willReturn(user);
+        given(userService.hasBlockingLoans("11.111.111-1")).willReturn(true);
         assertThrows(IllegalArgumentException.class,
                 () -> loanService.createLoan("11.111.111-1", LocalDate.now(), LocalDate.now().plusDays(1),
                         List.of(oneItem(1L))));
@@ -142,7 +172,7 @@ class LoanServiceTest {
     @Test
     void createLoan_fails_whenAlready5Active() {
         given(userRepository.findByRut(anyString())).willReturn(user).willReturn(user);
-        given(loanRepository.countByRutUserAndLateReturnDateIsNull(anyString())).willReturn(5L);
+        given(userService.takeLoanSlot(user, 5)).willReturn(false);
         assertThrows(IllegalArgumentException.class,
                 () -> loanService.createLoan("11", LocalDate.now(), LocalDate.now().plusDays(1),
                         List.of(oneItem(1L))));
@@ -151,7 +181,7 @@ class LoanServiceTest {
     @Test
     void createLoan_fails_onRepeatedTool() {
         given(userRepository.findByRut(anyString())).willReturn(user).willReturn(user);
-        given(loanRepository.countByRutUserAndLateReturnDateIsNull(anyString())).willReturn(0L);
+        given(userService.takeLoanSlot(user, 5)).willReturn(true);
         LoanService.Item a = oneItem(1L); LoanService.Item b = oneItem(1L);
         assertThrows(IllegalArgumentException.class,
                 () -> loanService.createLoan("11", LocalDate.now(), LocalDate.now().plusDays(1),
@@ -161,7 +191,7 @@ class LoanServiceTest {
     @Test
     void createLoan_fails_onInvalidQuantity() {
         given(userRepository.findByRut(anyString())).willReturn(user).willReturn(user);
-        given(loanRepository.countByRutUserAndLateReturnDateIsNull(anyString())).willReturn(0L);
+        given(userService.takeLoanSlot(user, 5)).willReturn(true);
 
         LoanService.Item x = new LoanService.Item(); x.toolId = 1L; x.quantity = 0;
         assertThrows(IllegalArgumentException.class,
@@ -175,7 +205,7 @@ class LoanServiceTest {
     @Test
     void createLoan_fails_toolNotFound_orWrongState_orNoStock() {
         given(userRepository.findByRut(anyString())).willReturn(user).willReturn(user);
-        given(loanRepository.countByRutUserAndLateReturnDateIsNull(anyString())).willReturn(0L);
+        given(userService.takeLoanSlot(user, 5)).willReturn(true);
 
         // not found
         given(toolRepository.findById(1L)).willReturn(Optional.empty());
@@ -184,14 +214,14 @@ class LoanServiceTest {
                         List.of(oneItem(1L))));
 
         // found but not "Disponible"
-        ToolEntity tWrong = tool(2L,"Taladro","Elec","Prestada",1,0,true);
+        ToolEntity tWrong = tool(2L,"Taladro","Elec",ToolState.LOANED,1,0,true);
         given(toolRepository.findById(2L)).willReturn(Optional.of(tWrong));
         assertThrows(IllegalArgumentException.class,
                 () -> loanService.createLoan("11", LocalDate.now(), LocalDate.now().plusDays(1),
                         List.of(oneItem(2L))));
 
         // found Disponible but no stock
-        ToolEntity tNoStock = tool(3L,"Taladro","Elec","Disponible",0,0,true);
+        ToolEntity tNoStock = tool(3L,"Taladro","Elec",ToolState.AVAILABLE,0,0,true);
         given(toolRepository.findById(3L)).willReturn(Optional.of(tNoStock));
         assertThrows(IllegalArgumentException.class,
                 () -> loanService.createLoan("11", LocalDate.now(), LocalDate.now().plusDays(1),
@@ -201,14 +231,32 @@ class LoanServiceTest {
     @Test
     void createLoan_fails_whenAlreadyActiveLoanOfSameTool() {
         given(userRepository.findByRut(anyString())).willReturn(user).willReturn(user);
-        given(loanRepository.countByRutUserAndLateReturnDateIsNull(anyString())).willReturn(0L);
+        given(userService.takeLoanSlot(user, 5)).willReturn(true);
 
-        ToolEntity disp = tool(4L,"Taladro","Elec","Disponible",2,0,true);
+        ToolEntity disp = tool(4L,"Taladro","Elec",ToolState.AVAILABLE,2,0,true);
         given(toolRepository.findById(4L)).willReturn(Optional.of(disp));
 
-        given(toolRepository.findIdsByNameCategoryAndState("Taladro","Elec","Prestada"))
-                .willReturn(List.of(200L, 201L));
-        given(loanRepository.existsActiveWithAnyToolId("11", List.of(200L,201L))).willReturn(true);
+        given(openRentalRepository.findRentedKeys("11", Set.of("taladro|elec"))).willReturn(List.of("taladro|elec"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> loanService.createLoan("11", LocalDate.now(), LocalDate.now().plusDays(1),
+                        List.of(oneItem(4L))));
+        verify(toolService, never()).updateTool(anyLong(), any(), any(), any(), any());
+    }
+
+    @Test
+    void createLoan_fails_whenConcurrentLoanTookSameTool() {
+        given(userRepository.findByRut(anyString())).willReturn(user).willReturn(user);
+        given(userService.takeLoanSlot(user, 5)).willReturn(true);
+        given(settingService.getDailyRentPrice()).willReturn(2000);
+
+        ToolEntity disp = tool(4L,"Taladro","Elec",ToolState.AVAILABLE,2,0,true);
+        given(toolRepository.findById(4L)).willReturn(Optional.of(disp));
+        given(toolService.updateTool(eq(4L), eq(ToolState.LOANED), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class)))
+                .willReturn(tool(5L,"Taladro","Elec",ToolState.LOANED,1,0,false));
+        given(loanRepository.save(org.mockito.ArgumentMatchers.any(LoanEntity.class))).willAnswer(inv -> inv.getArgument(0));
+        given(openRentalRepository.saveAllAndFlush(anyList()))
+                .willThrow(new org.springframework.dao.DataIntegrityViolationException("ux_open_rental_user_tool"));
 
         assertThrows(IllegalArgumentException.class,
                 () -> loanService.createLoan("11", LocalDate.now(), LocalDate.now().plusDays(1),
@@ -226,9 +274,9 @@ class LoanServiceTest {
         loan.setReturnDate(LocalDate.of(2025,10,5)); // vence día 5
         loan.setItems(new ArrayList<>());
 
-        ToolEntity t1 = tool(1L, "Taladro", "Elec", "Prestada", 0, 1000, false);
-        ToolEntity t2 = tool(2L, "Sierra", "Man", "Prestada", 0, 5000, false);
-        ToolEntity t3 = tool(3L, "Llave", "Man", "Prestada", 0, 0, false);
+        ToolEntity t1 = tool(1L, "Taladro", "Elec", ToolState.LOANED, 0, 1000, false);
+        ToolEntity t2 = tool(2L, "Sierra", "Man", ToolState.LOANED, 0, 5000, false);
+        ToolEntity t3 = tool(3L, "Llave", "Man", ToolState.LOANED, 0, 0, false);
 
         loan.addItem(lineOf(t1));
         loan.addItem(lineOf(t2));
@@ -253,15 +301,39 @@ class LoanServiceTest {
         assertEquals(LocalDate.of(2025,10,7), out.getLateReturnDate());
         assertEquals(1000 + 300, out.getDamagePenalty());
         assertEquals(2 * 500, out.getLateFine());           // 2 days * 500
+        assertEquals(1000 + 300 + 2 * 500, out.getOutstandingDebt());
 
         // updated status
-        verify(toolService).updateTool(eq(1L), eq("Dada de baja"), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class));
-        verify(toolService).updateTool(eq(2L), eq("En reparación"), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class));
-        verify(toolService).updateTool(eq(3L), eq("Disponible"), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class));
+        verify(toolService).updateTool(eq(1L), eq(ToolState.WRITTEN_OFF), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class));
+        verify(toolService).updateTool(eq(2L), eq(ToolState.IN_REPAIR), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class));
+        verify(toolService).updateTool(eq(3L), eq(ToolState.AVAILABLE), isNull(), isNull(), org.mockito.ArgumentMatchers.any(UserEntity.class));
 
         // decrement of amountOfLoans and recompute
-        verify(userRepository).save(argThat(u -> u.getAmountOfLoans() == 1));
-        verify(userService).recomputeActiveStatus("11.111.111-1");
+        verify(userService).releaseLoanSlots(customer, 1);
+        verify(userService).markStatusDirty("11.111.111-1");
+        verify(openRentalRepository).deleteByLoanId(77L);
+        verify(eventPublisher).publishEvent(new LoansChangedEvent("11.111.111-1", 77L, LoansChangedEvent.Kind.RETURNED));
+    }
+
+    @Test
+    void returnLoan_withoutFineRate_keepsAccruedFine() {
+        LoanEntity loan = overdueLoan(78L);
+        loan.setLateFine(5000); // accrued nightly
+        given(loanRepository.findById(78L)).willReturn(Optional.of(loan));
+        given(loanRepository.save(org.mockito.ArgumentMatchers.any(LoanEntity.class))).willAnswer(inv -> inv.getArgument(0));
+        given(userRepository.findByRut("11.111.111-1")).willReturn(user);
+
+        LoanEntity out = loanService.returnLoan(78L, LocalDate.of(2025,10,8), Set.of(), Set.of(), null, Map.of());
+
+        assertEquals(5000, out.getLateFine());              // no rate given: nothing added, nothing lowered
+        assertFalse(out.isLateFinePaid());
+        assertEquals(5000, out.getOutstandingDebt());
+
+        LoanEntity other = overdueLoan(79L);
+        given(loanRepository.findById(79L)).willReturn(Optional.of(other));
+        assertEquals(0, loanService.returnLoan(79L, LocalDate.of(2025,10,8), Set.of(), Set.of(), null, Map.of())
+                .getLateFine());
+        verifyNoInteractions(settingService);
     }
 
     //returnLoan: validations
@@ -314,7 +386,7 @@ class LoanServiceTest {
     @Test
     void payFines_setsFlags_andRecomputes() {
         LoanEntity l = new LoanEntity();
-        l.setId(5L); l.setRutUser("11.111.111-1");
+        l.setId(5L); l.setRutUser("11.111.111-1"); l.setLateReturnDate(LocalDate.of(2025,10,8));
         l.setLateFine(1000); l.setDamagePenalty(2000);
         given(loanRepository.findById(5L)).willReturn(Optional.of(l));
         given(loanRepository.save(org.mockito.ArgumentMatchers.any(LoanEntity.class))).willAnswer(inv -> inv.getArgument(0));
@@ -323,7 +395,141 @@ class LoanServiceTest {
 
         assertTrue(out.isLateFinePaid());
         assertTrue(out.isDamagePenaltyPaid());
-        verify(userService).recomputeActiveStatus("11.111.111-1");
+        assertEquals(0, out.getOutstandingDebt());
+        verify(userService).markStatusDirty("11.111.111-1");
+        verify(eventPublisher).publishEvent(new LoansChangedEvent("11.111.111-1", 5L, LoansChangedEvent.Kind.FINES_PAID));
+    }
+
+    @Test
+    void payFines_onlyLateFine_keepsDamageOutstanding() {
+        LoanEntity l = new LoanEntity();
+        l.setId(5L); l.setRutUser("11.111.111-1"); l.setLateReturnDate(LocalDate.of(2025,10,8));
+        l.setLateFine(1000); l.setDamagePenalty(2000);
+        given(loanRepository.findById(5L)).willReturn(Optional.of(l));
+        given(loanRepository.save(org.mockito.ArgumentMatchers.any(LoanEntity.class))).willAnswer(inv -> inv.getArgument(0));
+
+        LoanEntity out = loanService.payFines(5L, true, false);
+
+        assertEquals(2000, out.getOutstandingDebt());
+    }
+
+    @Test
+    void payFines_openLoan_isRejected() {
+        LoanEntity open = overdueLoan(5L);
+        open.setLateFine(1000);
+        given(loanRepository.findById(5L)).willReturn(Optional.of(open));
+
+        // later overdue days would otherwise never be charged
+        assertThrows(IllegalArgumentException.class, () -> loanService.payFines(5L, true, false));
+        assertFalse(open.isLateFinePaid());
+        verify(loanRepository, never()).save(any());
+        verifyNoInteractions(userService, eventPublisher);
+    }
+
+    // bulk return / payment
+    @Test
+    void returnLoans_groupsMovesPerCustomer_andReportsFailures() {
+        ToolEntity drill = tool(1L, "Taladro", "Elec", ToolState.LOANED, 2, 1000, false);
+        LoanEntity a = loanOf(70L, "11.111.111-1", LocalDate.of(2025,10,5), drill);
+        LoanEntity b = loanOf(71L, "11.111.111-1", LocalDate.of(2025,10,5), drill);
+        given(loanRepository.findByIdIn(Set.of(70L, 71L, 72L))).willReturn(List.of(a, b));
+        UserEntity customer = new UserEntity(); customer.setRut("11.111.111-1");
+        given(userRepository.findByRut("11.111.111-1")).willReturn(customer);
+
+        List<LoanService.BulkResult> out = loanService.returnLoans(List.of(
+                returnOf(70L, LocalDate.of(2025,10,7), 500),
+                returnOf(71L, LocalDate.of(2025,10,5), null),
+                returnOf(72L, LocalDate.of(2025,10,5), null)));
+
+        assertEquals(3, out.size());
+        assertTrue(out.get(0).isOk());
+        assertEquals(1000, out.get(0).getLateFine());                // 2 days * 500
+        assertTrue(out.get(1).isOk());
+        assertFalse(out.get(2).isOk());
+        assertThat(out.get(2).getError(), containsString("Loan not found"));
+
+        // both units of the same bucket in one call for the customer, one counter update and recompute
+        verify(toolService).moveUnits(argThat(moves -> moves.size() == 2
+                && moves.stream().allMatch(m -> m.toolId == 1L && m.state == ToolState.AVAILABLE)),
+                org.mockito.ArgumentMatchers.any(UserEntity.class));
+        verify(toolService, never()).updateTool(anyLong(), any(), any(), any(), any());
+        verify(loanRepository).saveAll(List.of(a, b));
+        verify(openRentalRepository).deleteByLoanIdIn(List.of(70L, 71L));
+        verify(userService).releaseLoanSlots(customer, 2);
+        verify(userService, times(1)).markStatusDirty("11.111.111-1");
+    }
+
+    @Test
+    void returnLoans_failedMove_failsThatCustomersLoans_andClosesTheOthers() {
+        ToolEntity drill = tool(1L, "Taladro", "Elec", ToolState.LOANED, 2, 1000, false);
+        ToolEntity saw = tool(2L, "Sierra", "Man", ToolState.LOANED, 1, 1000, false);
+        LoanEntity a = loanOf(70L, "11.111.111-1", LocalDate.of(2025,10,5), drill);
+        LoanEntity b = loanOf(71L, "22.222.222-2", LocalDate.of(2025,10,5), saw);
+        given(loanRepository.findByIdIn(Set.of(70L, 71L))).willReturn(List.of(a, b));
+        given(toolService.moveUnits(argThat(moves -> moves.get(0).toolId == 1L),
+                org.mockito.ArgumentMatchers.any(UserEntity.class)))
+                .willThrow(new IllegalArgumentException("Not enough stock for tool id=1. Available: 0"));
+
+        List<LoanService.BulkResult> out = loanService.returnLoans(List.of(
+                returnOf(70L, LocalDate.of(2025,10,7), 500),
+                returnOf(71L, LocalDate.of(2025,10,5), null)));
+
+        // the rejected move is reported on its loan instead of failing the whole request
+        assertFalse(out.get(0).isOk());
+        assertThat(out.get(0).getError(), containsString("Not enough stock"));
+        assertNull(a.getLateReturnDate());
+        assertTrue(out.get(1).isOk());
+        assertEquals(LocalDate.of(2025,10,5), b.getLateReturnDate());
+        verify(loanRepository).saveAll(List.of(b));
+        verify(openRentalRepository).deleteByLoanIdIn(List.of(71L));
+        verify(userService, never()).markStatusDirty("11.111.111-1");
+    }
+
+    @Test
+    void payFines_bulk_setsFlags_andMarksStatusDirty() {
+        LoanEntity a = new LoanEntity(); a.setId(5L); a.setRutUser("11.111.111-1"); a.setLateFine(1000);
+        LoanEntity b = new LoanEntity(); b.setId(6L); b.setRutUser("11.111.111-1"); b.setDamagePenalty(2000);
+        a.setLateReturnDate(LocalDate.of(2025,10,8)); b.setLateReturnDate(LocalDate.of(2025,10,8));
+        given(loanRepository.findByIdIn(Set.of(5L, 6L))).willReturn(List.of(a, b));
+
+        List<LoanService.BulkResult> out = loanService.payFines(List.of(paymentOf(5L), paymentOf(6L), paymentOf(5L)));
+
+        assertTrue(out.get(0).isOk());
+        assertTrue(out.get(1).isOk());
+        assertFalse(out.get(2).isOk());                               // repeated in the request
+        assertTrue(a.isLateFinePaid());
+        assertTrue(b.isDamagePenaltyPaid());
+        // marked per loan, UserService recomputes each RUT once at commit
+        verify(userService, times(2)).markStatusDirty("11.111.111-1");
+        verify(userService, never()).recomputeActiveStatus(anyString());
+    }
+
+    @Test
+    void payFines_bulk_reportsOpenLoansAsFailed() {
+        LoanEntity open = overdueLoan(5L); open.setLateFine(1000);
+        LoanEntity closed = overdueLoan(6L); closed.setLateFine(1000); closed.setLateReturnDate(LocalDate.of(2025,10,8));
+        given(loanRepository.findByIdIn(Set.of(5L, 6L))).willReturn(List.of(open, closed));
+
+        List<LoanService.BulkResult> out = loanService.payFines(List.of(paymentOf(5L), paymentOf(6L)));
+
+        assertFalse(out.get(0).isOk());
+        assertThat(out.get(0).getError(), containsString("still open"));
+        assertTrue(out.get(1).isOk());
+        assertFalse(open.isLateFinePaid());
+        assertTrue(closed.isLateFinePaid());
+        verify(loanRepository).saveAll(List.of(closed));
+    }
+
+    @Test
+    void returnLoans_fails_onEmptyRequest() {
+        assertThrows(IllegalArgumentException.class, () -> loanService.returnLoans(List.of()));
+        verifyNoInteractions(loanRepository);
+    }
+
+    @Test
+    void version_readsLoansCounter() {
+        given(changeCounters.current(ChangeCounterService.Aggregate.LOANS)).willReturn(7L);
+        assertEquals(7L, loanService.version());
     }
 
     //helpers
@@ -342,34 +548,47 @@ class LoanServiceTest {
     @Test
     void listLoansWithUnpaidDebts_mapsParams() {
         Pageable pr = PageRequest.of(0, 10);
-        Page<LoanEntity> pg = new PageImpl<>(List.of(), pr, 0);
-        given(loanRepository.findLoansWithUnpaidDebts(any(), anyBoolean(), any(), anyBoolean(), any(), any()))
-                .willReturn(pg);
+        given(loanRepository.findIdsWithUnpaidDebts(any(), anyBoolean(), any(), anyBoolean(), any(), any()))
+                .willReturn(new PageImpl<>(List.of(), pr, 0));
 
         // rut "" -> null;no dates
         Page<LoanEntity> out = loanService.listLoansWithUnpaidDebts("", null, null, pr);
-        assertSame(pg, out);
+        assertTrue(out.isEmpty());
 
-        // verify flags
-        verify(loanRepository).findLoansWithUnpaidDebts(
+        // verify flags; empty page -> no second query
+        verify(loanRepository).findIdsWithUnpaidDebts(
                 isNull(), eq(false), isNull(), eq(false), isNull(), eq(pr));
+        verify(loanRepository, never()).findByIdIn(any());
     }
 
     @Test
     void listOverdueLoans_withAndWithoutRut() {
         Pageable pr = PageRequest.of(0, 5, Sort.by("returnDate"));
-        Page<LoanEntity> pg1 = new PageImpl<>(List.of(), pr, 0);
-        Page<LoanEntity> pg2 = new PageImpl<>(List.of(), pr, 0);
+        given(loanRepository.findOverdueIds(any(), org.mockito.ArgumentMatchers.any(LocalDate.class), eq(pr)))
+                .willReturn(new PageImpl<>(List.of(), pr, 0));
 
-        given(loanRepository.findByLateReturnDateIsNullAndReturnDateBefore(org.mockito.ArgumentMatchers.any(LocalDate.class), eq(pr)))
-                .willReturn(pg1);
-        given(loanRepository.findByRutUserAndLateReturnDateIsNullAndReturnDateBefore(eq("11"),
-                org.mockito.ArgumentMatchers.any(LocalDate.class), eq(pr)))
-                .willReturn(pg2);
+        loanService.listOverdueLoans(null, pr);
+        loanService.listOverdueLoans("11", pr);
+        loanService.listOverdueLoans(" ", pr); // blank -> rama sin rut
 
-        assertSame(pg1, loanService.listOverdueLoans(null, pr));
-        assertSame(pg2, loanService.listOverdueLoans("11", pr));
-        assertSame(pg1, loanService.listOverdueLoans(" ", pr)); // blank -> rama sin rut
+        verify(loanRepository, times(2)).findOverdueIds(isNull(), org.mockito.ArgumentMatchers.any(LocalDate.class), eq(pr));
+        verify(loanRepository).findOverdueIds(eq("11"), org.mockito.ArgumentMatchers.any(LocalDate.class), eq(pr));
+    }
+
+    @Test
+    void listLoansByUser_loadsThePageWithItems_inPageOrder() {
+        Pageable pr = PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "reservationDate"));
+        given(loanRepository.findIdsByRutUser("11", pr)).willReturn(new PageImpl<>(List.of(9L, 4L, 6L), pr, 8));
+        LoanEntity l4 = new LoanEntity(); l4.setId(4L);
+        LoanEntity l6 = new LoanEntity(); l6.setId(6L);
+        LoanEntity l9 = new LoanEntity(); l9.setId(9L);
+        given(loanRepository.findByIdIn(List.of(9L, 4L, 6L))).willReturn(List.of(l4, l6, l9));
+
+        Page<LoanEntity> out = loanService.listLoansByUser("11", pr);
+
+        assertEquals(List.of(l9, l4, l6), out.getContent());
+        assertEquals(8, out.getTotalElements());
+        assertEquals(pr, out.getPageable());
     }
 
 
@@ -380,7 +599,7 @@ class LoanServiceTest {
         return i;
     }
 
-    private static ToolEntity tool(Long id, String name, String cat, String state,
+    private static ToolEntity tool(Long id, String name, String cat, ToolState state,
                                    int amount, Integer rep, boolean available) {
         ToolEntity t = new ToolEntity();
         t.setId(id); t.setName(name); t.setCategory(cat);
@@ -396,11 +615,29 @@ class LoanServiceTest {
         return li;
     }
 
-    private static UserEntity inactiveUser() {
-        UserEntity u = new UserEntity();
-        u.setRut("11.111.111-1");
-        u.setActive(false);
-        return u;
+    private static LoanEntity loanOf(Long id, String rut, LocalDate due, ToolEntity... tools) {
+        LoanEntity l = new LoanEntity();
+        l.setId(id); l.setRutUser(rut); l.setReturnDate(due);
+        l.setItems(new ArrayList<>());
+        for (ToolEntity t : tools) l.addItem(lineOf(t));
+        return l;
+    }
+
+    // Due on Oct 5th with one plain tool out
+    private static LoanEntity overdueLoan(Long id) {
+        return loanOf(id, "11.111.111-1", LocalDate.of(2025,10,5), tool(3L, "Llave", "Man", ToolState.LOANED, 0, 0, false));
+    }
+
+    private static LoanService.ReturnRequest returnOf(Long loanId, LocalDate actual, Integer finePerDay) {
+        LoanService.ReturnRequest r = new LoanService.ReturnRequest();
+        r.loanId = loanId; r.actualReturnDate = actual; r.finePerDay = finePerDay;
+        return r;
+    }
+
+    private static LoanService.FinePayment paymentOf(Long loanId) {
+        LoanService.FinePayment p = new LoanService.FinePayment();
+        p.loanId = loanId; p.payLateFine = true; p.payDamagePenalty = true;
+        return p;
     }
 
     private static LoanEntity basicLoanWithToolIds(Long... ids) {
@@ -0,0 +1,47 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueLoanDetectorTest {
+
+    @Mock LoanRepository loanRepository;
+    @Mock ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks OverdueLoanDetector detector;
+
+    @Test
+    void detect_sameDay_doesNothing() {
+        assertEquals(0, detector.detect(LocalDate.now()));
+        verifyNoInteractions(loanRepository, eventPublisher);
+    }
+
+    @Test
+    void detect_nextDay_publishesOncePerLoan() {
+        LocalDate today = LocalDate.now();
+        LocalDate tomorrow = today.plusDays(1);
+        given(loanRepository.findOpenWithReturnDateBetween(today, tomorrow))
+                .willReturn(List.<Object[]>of(new Object[]{5L, "11.111.111-1"}));
+
+        assertEquals(1, detector.detect(tomorrow));
+        // already reported, the same day is not checked again
+        assertEquals(0, detector.detect(tomorrow));
+
+        verify(eventPublisher).publishEvent(
+                new LoansChangedEvent("11.111.111-1", 5L, LoansChangedEvent.Kind.OVERDUE));
+        verify(loanRepository, times(1)).findOpenWithReturnDateBetween(today, tomorrow);
+    }
+}
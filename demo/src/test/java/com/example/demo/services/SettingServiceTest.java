@@ -8,6 +8,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Optional;
 
@@ -21,6 +22,12 @@ class SettingServiceTest {
     @Mock
     SettingRepository repo;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    ChangeCounterService changeCounters;
+
     @InjectMocks
     SettingService service;
 
@@ -63,6 +70,13 @@ class SettingServiceTest {
         // price = ID , text = value
         assertEquals(SettingService.daily_key, saved.getPrice());
         assertEquals("4200", saved.getText());
+        verify(eventPublisher).publishEvent(new SettingsChangedEvent(SettingService.daily_key));
+    }
+
+    @Test
+    void version_readsSettingsCounter() {
+        given(changeCounters.current(ChangeCounterService.Aggregate.SETTINGS)).willReturn(3L);
+        assertEquals(3L, service.version());
     }
 
     @Test
@@ -71,4 +85,14 @@ class SettingServiceTest {
                 assertThrows(IllegalArgumentException.class, () -> service.setDailyRentPrice(-1));
         assertTrue(ex.getMessage().toLowerCase().contains(">= 0"));
     }
+
+    @Test
+    void getDailyFineRate_readsValue_defaultsToZero() {
+        given(repo.findById(SettingService.daily_fine_key))
+                .willReturn(Optional.of(new SettingEntity(SettingService.daily_fine_key, "700")))
+                .willReturn(Optional.empty());
+
+        assertEquals(700, service.getDailyFineRate());
+        assertEquals(0, service.getDailyFineRate());
+    }
 }
@@ -0,0 +1,110 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.repositories.ToolRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ToolCatalogTest {
+
+    @Mock ToolRepository toolRepository;
+    @Mock ChangeCounterService changeCounters;
+
+    @InjectMocks ToolCatalog toolCatalog;
+
+    @Test
+    void load_uniqueNamesInStableOrder_andListings() {
+        ToolEntity a = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 1);
+        ToolEntity b = tool(2L, "Taladro", "Elec", ToolState.LOANED, 1);   // duplicated by name+cat
+        ToolEntity c = tool(3L, "Sierra", "Manual", ToolState.AVAILABLE, 0); // no stock
+        ToolEntity d = tool(4L, null, "Manual", ToolState.AVAILABLE, 1);     // ignore nulls
+        ToolEntity e = tool(5L, "Llave", null, ToolState.AVAILABLE, 1);      // ignore nulls
+        given(toolRepository.findAll()).willReturn(List.of(a, b, c, d, e));
+
+        ToolCatalog.Snapshot snap = toolCatalog.current();
+
+        assertEquals(2, snap.namesWithCategory().size());
+        assertEquals("Taladro", snap.namesWithCategory().get(0).getName());
+        assertEquals("Sierra", snap.namesWithCategory().get(1).getName());
+        assertEquals(List.of(1L, 4L, 5L), snap.available().stream().map(ToolEntity::getId).toList());
+        assertEquals(List.of(2L), snap.byState(ToolState.LOANED).stream().map(ToolEntity::getId).toList());
+
+        // second read does not query again
+        toolCatalog.current();
+        verify(toolRepository, times(1)).findAll();
+    }
+
+    @Test
+    void onToolsChanged_appliesDelta_andBumpsVersion() {
+        ToolEntity a = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 1);
+        given(toolRepository.findAll()).willReturn(List.of(a));
+        long v1 = toolCatalog.version();
+
+        // the only unit moved out and a new "Prestada" bucket appeared
+        ToolEntity aAfter = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 0);
+        ToolEntity p = tool(9L, "Taladro", "Elec", ToolState.LOANED, 1);
+        given(changeCounters.current(ChangeCounterService.Aggregate.TOOLS)).willReturn(v1 + 1);
+        toolCatalog.onToolsChanged(new ToolsChangedEvent(List.of(aAfter, p)));
+
+        ToolCatalog.Snapshot snap = toolCatalog.current();
+        assertEquals(v1 + 1, snap.version());
+        assertTrue(snap.available().isEmpty());
+        assertEquals(List.of(9L), snap.byState(ToolState.LOANED).stream().map(ToolEntity::getId).toList());
+
+        // the snapshot holds copies, later changes to the entity do not leak in
+        p.setAmount(50);
+        assertEquals(1, toolCatalog.current().byState(ToolState.LOANED).get(0).getAmount());
+        verify(toolRepository, times(1)).findAll();
+    }
+
+    @Test
+    void onToolsChanged_otherWritesInBetween_dropsSnapshot() {
+        given(toolRepository.findAll()).willReturn(List.of(tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 1)));
+        toolCatalog.current();
+
+        // counter moved by two: another replica wrote too, the delta alone would miss its rows
+        given(changeCounters.current(ChangeCounterService.Aggregate.TOOLS)).willReturn(2L);
+        toolCatalog.onToolsChanged(new ToolsChangedEvent(List.of(tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 0))));
+
+        assertEquals(2L, toolCatalog.version());
+        verify(toolRepository, times(2)).findAll();
+    }
+
+    @Test
+    void current_counterAhead_reloads() {
+        given(toolRepository.findAll()).willReturn(List.of());
+        toolCatalog.current();
+
+        given(changeCounters.current(ChangeCounterService.Aggregate.TOOLS)).willReturn(5L);
+        assertEquals(5L, toolCatalog.current().version());
+        verify(toolRepository, times(2)).findAll();
+    }
+
+    @Test
+    void onToolsChanged_beforeLoad_isIgnored() {
+        toolCatalog.onToolsChanged(new ToolsChangedEvent(List.of(tool(1L, "X", "Y", ToolState.AVAILABLE, 1))));
+        verifyNoInteractions(toolRepository);
+    }
+
+    private static ToolEntity tool(Long id, String name, String cat, ToolState state, int amount) {
+        ToolEntity t = new ToolEntity();
+        t.setId(id);
+        t.setName(name);
+        t.setCategory(cat);
+        t.setInitialState(state);
+        t.setAvailable(state == ToolState.AVAILABLE);
+        t.setAmount(amount);
+        return t;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
+import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
+import com.example.demo.entities.UserEntity;
+import com.example.demo.repositories.KardexRepository;
+import com.example.demo.repositories.ToolRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ToolImportServiceTest {
+
+    @Mock ToolRepository toolRepository;
+    @Mock KardexRepository kardexRepository;
+    @Mock ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks ToolImportService importService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importTools_mergesLinesIntoBuckets_andWritesOneKardexPerBucket() throws Exception {
+        String csv = """
+                name,category,amount,repositionValue,state
+                Taladro,Elec,3,50000,
+                taladro ,ELEC,2,52000,Disponible
+                Sierra,Man,1,9000,En reparación
+                ,Man,1,9000,
+                Llave,Man,0,1000,
+                """;
+        ToolEntity existing = new ToolEntity(7L, "Taladro", "Elec", ToolState.AVAILABLE, 40000, true, 10);
+        ToolEntity created = new ToolEntity(8L, "Sierra", "Man", ToolState.IN_REPAIR, 9000, false, 0);
+        given(toolRepository.findBucketsForUpdateByKeyNames(anyCollection()))
+                .willReturn(List.of(existing))
+                .willReturn(List.of(created));
+        given(toolRepository.saveAll(anyList())).willAnswer(inv -> inv.getArgument(0));
+
+        UserEntity user = new UserEntity();
+        user.setRut("11.111.111-1");
+        ImportSupport.ImportReport out = importService.importTools(stream(csv), user);
+
+        assertEquals(5, out.getTotal());
+        assertEquals(3, out.getInserted());
+        assertEquals(List.of(5, 6), out.getErrors().stream().map(ImportSupport.RowError::getLine).toList());
+
+        // Taladro lines (case and blanks aside) merged into the existing bucket, Sierra is a new one
+        assertEquals(15, existing.getAmount());
+        assertEquals(52000, existing.getRepositionValue());
+
+        ArgumentCaptor<List<KardexEntity>> kardex = ArgumentCaptor.forClass(List.class);
+        verify(kardexRepository).saveAll(kardex.capture());
+        assertEquals(List.of(5, 1), kardex.getValue().stream().map(KardexEntity::getStock).toList());
+        assertTrue(kardex.getValue().stream().allMatch(k -> k.getType() == MovementType.ENTRY));
+        verify(toolRepository, times(1)).findBucketsForUpdateByKeyNames(List.of("taladro", "sierra"));
+        // the new bucket goes in with one multi-row insert, then is locked by the same chunked lookup
+        ArgumentCaptor<List<ToolEntity>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(toolRepository).insertMissingBuckets(inserted.capture());
+        assertEquals(List.of("Sierra"), inserted.getValue().stream().map(ToolEntity::getName).toList());
+        verify(toolRepository).findBucketsForUpdateByKeyNames(List.of("sierra"));
+        verify(toolRepository, never()).lockBucket(anyString(), anyString(), any(), anyInt());
+        assertEquals(1, created.getAmount());
+        verify(eventPublisher).publishEvent(any(ToolsChangedEvent.class));
+    }
+
+    @Test
+    void importTools_missingHeaderColumn_throws() {
+        UserEntity user = new UserEntity();
+        assertThrows(IllegalArgumentException.class,
+                () -> importService.importTools(stream("name,category\nTaladro,Elec\n"), user));
+        verifyNoInteractions(toolRepository, kardexRepository);
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
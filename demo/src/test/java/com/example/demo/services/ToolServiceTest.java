@@ -1,15 +1,20 @@
 package com.example.demo.services;
 
 import com.example.demo.entities.KardexEntity;
+import com.example.demo.entities.MovementType;
 import com.example.demo.entities.ToolEntity;
+import com.example.demo.entities.ToolState;
 import com.example.demo.entities.UserEntity;
 import com.example.demo.repositories.KardexRepository;
 import com.example.demo.repositories.ToolRepository;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.*;
 
@@ -23,6 +28,8 @@ class ToolServiceTest {
 
     @Mock ToolRepository toolRepository;
     @Mock KardexRepository kardexRepository;
+    @Mock ToolCatalog toolCatalog;
+    @Mock ApplicationEventPublisher eventPublisher;
 
     @InjectMocks ToolService toolService;
 
@@ -38,43 +45,54 @@ class ToolServiceTest {
 
     @Test
     void saveTool_createsNewBucket_andWritesKardex() {
-        ToolEntity input = tool(null, "Taladro", "Elec", "Disponible", 50000, true, 3);
+        ToolEntity input = tool(null, "Taladro", "Elec", ToolState.AVAILABLE, 50000, true, 3);
 
-        // no  bucket with same name-category-state
-        given(toolRepository.findByNameAndCategoryAndInitialState("Taladro", "Elec", "Disponible"))
-                .willReturn(List.of());
-
-        // NEW ToolEntity; simulate JPA asigns id=101
-        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> {
-            ToolEntity t = inv.getArgument(0);
-            if (t.getId() == null) t.setId(101L);
-            return t;
-        });
+        // no bucket with same name-category-state: the repository creates an empty one (id=101)
+        given(toolRepository.lockBucket("Taladro", "Elec", ToolState.AVAILABLE, 50000))
+                .willReturn(tool(101L, "Taladro", "Elec", ToolState.AVAILABLE, 50000, true, 0));
+        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> inv.getArgument(0));
 
         ToolEntity out = toolService.saveTool(input, user);
 
         assertEquals(101L, out.getId());
         assertEquals("Taladro", out.getName());
-        assertEquals("Disponible", out.getInitialState());
+        assertEquals(ToolState.AVAILABLE, out.getInitialState());
+        assertEquals(3, out.getAmount());
         // kardex
         verify(kardexRepository).save(argThat(k ->
                 k.getTool().getId().equals(101L)
-                        && "Ingreso".equals(k.getType())
+                        && k.getType() == MovementType.ENTRY
                         && k.getStock() == 3
                         && "11.111.111-1".equals(k.getRutUser())
         ));
+        // catalog snapshot gets the new bucket after commit
+        verify(eventPublisher).publishEvent(argThat((Object e) ->
+                e instanceof ToolsChangedEvent ev && ev.tools().equals(List.of(out))));
+    }
+
+    @Test
+    void saveTool_kardexWriteTimer_leavesTheInsertBatched() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            saveTool_createsNewBucket_andWritesKardex();
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+        assertEquals(1, registry.get("kardex.write").timer().count());
+        // no forced flush per row: the insert goes out with the rest of the transaction's batch
+        verify(kardexRepository, never()).flush();
     }
 
     @Test
     void saveTool_mergesIntoExistingBucket_andWritesKardex() {
         // exists bucket Disponible Taladro/Elec with amount=5
-        ToolEntity existing = tool(10L, "Taladro", "Elec", "Disponible", 30000, true, 5);
+        ToolEntity existing = tool(10L, "Taladro", "Elec", ToolState.AVAILABLE, 30000, true, 5);
 
-        given(toolRepository.findByNameAndCategoryAndInitialState("Taladro", "Elec", "Disponible"))
-                .willReturn(List.of(existing));
+        given(toolRepository.lockBucket("Taladro", "Elec", ToolState.AVAILABLE, 50000)).willReturn(existing);
 
         // input adds 2 units and update repositionValue
-        ToolEntity input = tool(null, "Taladro", "Elec", "Disponible", 50000, true, 2);
+        ToolEntity input = tool(null, "Taladro", "Elec", ToolState.AVAILABLE, 50000, true, 2);
 
         given(toolRepository.save(existing)).willAnswer(inv -> inv.getArgument(0));
 
@@ -86,7 +104,7 @@ class ToolServiceTest {
 
         verify(kardexRepository).save(argThat(k ->
                 k.getTool().getId().equals(10L)
-                        && "Ingreso".equals(k.getType())
+                        && k.getType() == MovementType.ENTRY
                         && k.getStock() == 2         // SOLO ingresado
         ));
     }
@@ -94,28 +112,26 @@ class ToolServiceTest {
     @Test
     void saveTool_validations_fail() {
         // name null
-        ToolEntity t1 = tool(null, null, "Cat", "Disponible", 10, true, 1);
+        ToolEntity t1 = tool(null, null, "Cat", ToolState.AVAILABLE, 10, true, 1);
         assertThrows(IllegalArgumentException.class, () -> toolService.saveTool(t1, user));
 
         // category null
-        ToolEntity t2 = tool(null, "Name", null, "Disponible", 10, true, 1);
+        ToolEntity t2 = tool(null, "Name", null, ToolState.AVAILABLE, 10, true, 1);
         assertThrows(IllegalArgumentException.class, () -> toolService.saveTool(t2, user));
 
         // repositionValue <= 0
-        ToolEntity t3 = tool(null, "Name", "Cat", "Disponible", 0, true, 1);
+        ToolEntity t3 = tool(null, "Name", "Cat", ToolState.AVAILABLE, 0, true, 1);
         assertThrows(IllegalArgumentException.class, () -> toolService.saveTool(t3, user));
 
         // amount <= 0
-        ToolEntity t4 = tool(null, "Name", "Cat", "Disponible", 10, true, 0);
+        ToolEntity t4 = tool(null, "Name", "Cat", ToolState.AVAILABLE, 10, true, 0);
         assertThrows(IllegalArgumentException.class, () -> toolService.saveTool(t4, user));
 
         // initialState null
         ToolEntity t5 = tool(null, "Name", "Cat", null, 10, true, 1);
         assertThrows(IllegalArgumentException.class, () -> toolService.saveTool(t5, user));
 
-        // initialState invalid
-        ToolEntity t6 = tool(null, "Name", "Cat", "INVALID", 10, true, 1);
-        assertThrows(IllegalArgumentException.class, () -> toolService.saveTool(t6, user));
+        verifyNoInteractions(toolRepository, kardexRepository);
     }
 
 
@@ -125,25 +141,24 @@ class ToolServiceTest {
     void updateTool_fails_whenNotFound() {
         given(toolRepository.findById(9L)).willReturn(Optional.empty());
         assertThrows(IllegalArgumentException.class,
-                () -> toolService.updateTool(9L, "Prestada", null, null, user));
+                () -> toolService.updateTool(9L, ToolState.LOANED, null, null, user));
     }
 
     @Test
     void updateTool_disponibleToOther_createsOrMerges_andWritesKardex() {
         // Origin: bucket Available with amount=2
-        ToolEntity origen = tool(1L, "Taladro", "Elec", "Disponible", 50000, true, 2);
+        ToolEntity origen = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 50000, true, 2);
         given(toolRepository.findById(1L)).willReturn(Optional.of(origen));
 
-        // repository to search for all with the same name/category
-        ToolEntity yaPrestada = tool(20L, "Taladro", "Elec", "Prestada", 50000, false, 4);
-        given(toolRepository.findByNameAndCategory("Taladro", "Elec"))
-                .willReturn(List.of(origen, yaPrestada));
+        // existing "Prestada" bucket for the same name/category
+        ToolEntity yaPrestada = tool(20L, "Taladro", "Elec", ToolState.LOANED, 50000, false, 4);
+        given(toolRepository.lockMove(origen, ToolState.LOANED)).willReturn(yaPrestada);
 
         // save for origin (subtract 1) and for target (add 1)
         given(toolRepository.save(origen)).willAnswer(inv -> inv.getArgument(0));
         given(toolRepository.save(yaPrestada)).willAnswer(inv -> inv.getArgument(0));
 
-        ToolEntity out = toolService.updateTool(1L, "Prestada", null, null, user);
+        ToolEntity out = toolService.updateTool(1L, ToolState.LOANED, null, null, user);
 
         // Origin -1
         assertEquals(1, origen.getAmount());
@@ -153,102 +168,106 @@ class ToolServiceTest {
         assertEquals(20L, out.getId());
 
         verify(kardexRepository).save(argThat(k ->
-                "Cambio de estado: Prestada".equals(k.getType())
+                k.getType() == MovementType.TO_LOANED
                         && k.getTool().getId().equals(20L)
                         && k.getStock() == 5
+                        && k.getQuantity() == 1
         ));
     }
 
     @Test
     void updateTool_disponibleToOther_createsNewTarget_whenMissing() {
-        ToolEntity origen = tool(1L, "Taladro", "Elec", "Disponible", 50000, true, 1);
+        ToolEntity origen = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 50000, true, 1);
         given(toolRepository.findById(1L)).willReturn(Optional.of(origen));
 
+        // created empty by the repository
+        given(toolRepository.lockMove(origen, ToolState.LOANED))
+                .willReturn(tool(99L, "Taladro", "Elec", ToolState.LOANED, 50000, false, 0));
+        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> inv.getArgument(0));
 
-        given(toolRepository.findByNameAndCategory("Taladro", "Elec"))
-                .willReturn(List.of(origen));
-
-
-        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> {
-            ToolEntity t = inv.getArgument(0);
-            if (t.getId() == null) t.setId(99L); // id del nuevo bucket
-            return t;
-        });
-
-        ToolEntity out = toolService.updateTool(1L, "Prestada", null, null, user);
+        ToolEntity out = toolService.updateTool(1L, ToolState.LOANED, null, null, user);
         assertEquals(99L, out.getId()); // nuevo bucket
+        assertEquals(1, out.getAmount());
         verify(kardexRepository).save(any(KardexEntity.class));
     }
 
     @Test
     void updateTool_otherToDisponible_mergesOrCreates_andWritesKardex() {
-        ToolEntity origen = tool(5L, "Sierra", "Manual", "Prestada", 20000, false, 3);
+        ToolEntity origen = tool(5L, "Sierra", "Manual", ToolState.LOANED, 20000, false, 3);
         given(toolRepository.findById(5L)).willReturn(Optional.of(origen));
 
-        ToolEntity disponible = tool(8L, "Sierra", "Manual", "Disponible", 20000, true, 10);
-
-        given(toolRepository.findByNameAndCategory("Sierra", "Manual"))
-                .willReturn(List.of(origen, disponible));
+        ToolEntity disponible = tool(8L, "Sierra", "Manual", ToolState.AVAILABLE, 20000, true, 10);
+        given(toolRepository.lockMove(origen, ToolState.AVAILABLE)).willReturn(disponible);
 
         given(toolRepository.save(origen)).willAnswer(inv -> inv.getArgument(0));
         given(toolRepository.save(disponible)).willAnswer(inv -> inv.getArgument(0));
 
-        ToolEntity out = toolService.updateTool(5L, "Disponible", null, null, user);
+        ToolEntity out = toolService.updateTool(5L, ToolState.AVAILABLE, null, null, user);
 
         assertEquals(2, origen.getAmount());     // -1
         assertEquals(11, disponible.getAmount()); // +1
         assertEquals(8L, out.getId());
 
         verify(kardexRepository).save(argThat(k ->
-                "Cambio de estado: Disponible".equals(k.getType())
+                k.getType() == MovementType.TO_AVAILABLE
                         && k.getTool().getId().equals(8L)
                         && k.getStock() == 11
         ));
     }
 
     @Test
-    void updateTool_otherToOther_usesFindFirstTarget_andWritesKardex() {
-        ToolEntity origen = tool(50L, "Llave", "Manual", "En reparación", 15000, false, 2);
+    void updateTool_otherToOther_createsTarget_andWritesKardex() {
+        ToolEntity origen = tool(50L, "Llave", "Manual", ToolState.IN_REPAIR, 15000, false, 2);
         given(toolRepository.findById(50L)).willReturn(Optional.of(origen));
 
+        given(toolRepository.lockMove(origen, ToolState.WRITTEN_OFF))
+                .willReturn(tool(77L, "Llave", "Manual", ToolState.WRITTEN_OFF, 15000, false, 0));
+        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> inv.getArgument(0));
 
-        given(toolRepository.findFirstByNameAndCategoryAndInitialState("Llave", "Manual", "Dada de baja"))
-                .willReturn(Optional.empty());
-
-        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> {
-            ToolEntity t = inv.getArgument(0);
-            if (t.getId() == null) t.setId(77L);
-            return t;
-        });
-
-        ToolEntity out = toolService.updateTool(50L, "Dada de baja", null, null, user);
+        ToolEntity out = toolService.updateTool(50L, ToolState.WRITTEN_OFF, null, null, user);
 
         // origin -1
         assertEquals(1, origen.getAmount());
         // new destination +1
         assertEquals(77L, out.getId());
-        assertEquals("Dada de baja", out.getInitialState());
+        assertEquals(ToolState.WRITTEN_OFF, out.getInitialState());
         assertEquals(1, out.getAmount());
 
         verify(kardexRepository).save(argThat(k ->
-                "Cambio de estado: Dada de baja".equals(k.getType())
+                k.getType() == MovementType.TO_WRITTEN_OFF
                         && k.getTool().getId().equals(77L)
                         && k.getStock() == 1
         ));
     }
 
     @Test
-    void updateTool_invalidState_throws() {
-        ToolEntity origen = tool(1L, "Taladro", "Elec", "Disponible", 50000, true, 1);
-        given(toolRepository.findById(1L)).willReturn(Optional.of(origen));
+    void updateTool_transitionNotAllowed_throws() {
+        ToolEntity baja = tool(1L, "Taladro", "Elec", ToolState.WRITTEN_OFF, 50000, false, 1);
+        given(toolRepository.findById(1L)).willReturn(Optional.of(baja));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> toolService.updateTool(1L, ToolState.AVAILABLE, null, null, user));
+        assertTrue(ex.getMessage().contains("Cannot move"));
+        assertEquals(1, baja.getAmount());
+        verify(toolRepository, never()).save(any());
+        verifyNoInteractions(kardexRepository);
+    }
 
-        assertThrows(IllegalArgumentException.class,
-                () -> toolService.updateTool(1L, "XXX", null, null, user));
+    @Test
+    void updateTool_sameState_onlyEditsFields() {
+        ToolEntity t = tool(3L, "Taladro", "Elec", ToolState.IN_REPAIR, 10000, false, 2);
+        given(toolRepository.findById(3L)).willReturn(Optional.of(t));
+        given(toolRepository.save(t)).willAnswer(inv -> inv.getArgument(0));
+
+        ToolEntity out = toolService.updateTool(3L, ToolState.IN_REPAIR, 4, null, user);
+
+        assertEquals(4, out.getAmount());
+        verifyNoInteractions(kardexRepository);
     }
 
     @Test
     void updateTool_setsNewAmount_andNewRepositionValue() {
-        ToolEntity t = tool(1L, "Taladro", "Elec", "Disponible", 10000, true, 5);
+        ToolEntity t = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 10000, true, 5);
         given(toolRepository.findById(1L)).willReturn(Optional.of(t));
         given(toolRepository.save(t)).willAnswer(inv -> inv.getArgument(0));
 
@@ -260,7 +279,7 @@ class ToolServiceTest {
 
     @Test
     void updateTool_negativeAmountOrReposition_throws() {
-        ToolEntity t = tool(1L, "Taladro", "Elec", "Disponible", 10000, true, 5);
+        ToolEntity t = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 10000, true, 5);
         given(toolRepository.findById(1L)).willReturn(Optional.of(t));
 
         assertThrows(IllegalArgumentException.class,
@@ -272,36 +291,147 @@ class ToolServiceTest {
 
     @Test
     void updateTool_disponibleToOther_withoutStock_throws() {
-        ToolEntity t = tool(1L, "Taladro", "Elec", "Disponible", 10000, true, 0);
+        ToolEntity t = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 10000, true, 0);
         given(toolRepository.findById(1L)).willReturn(Optional.of(t));
 
-        assertThrows(IllegalArgumentException.class,
-                () -> toolService.updateTool(1L, "Prestada", null, null, user));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> toolService.updateTool(1L, ToolState.LOANED, null, null, user));
+        assertEquals("No hay stock disponible para mover a otro estado.", ex.getMessage());
     }
 
     @Test
     void updateTool_otherToDisponible_withoutStock_throws() {
-        ToolEntity t = tool(2L, "Taladro", "Elec", "Prestada", 10000, false, 0);
+        ToolEntity t = tool(2L, "Taladro", "Elec", ToolState.LOANED, 10000, false, 0);
         given(toolRepository.findById(2L)).willReturn(Optional.of(t));
 
         assertThrows(IllegalArgumentException.class,
-                () -> toolService.updateTool(2L, "Disponible", null, null, user));
+                () -> toolService.updateTool(2L, ToolState.AVAILABLE, null, null, user));
     }
 
     @Test
     void updateTool_otherToOther_withoutStock_throws() {
-        ToolEntity t = tool(3L, "Taladro", "Elec", "En reparación", 10000, false, 0);
+        ToolEntity t = tool(3L, "Taladro", "Elec", ToolState.IN_REPAIR, 10000, false, 0);
         given(toolRepository.findById(3L)).willReturn(Optional.of(t));
 
         assertThrows(IllegalArgumentException.class,
-                () -> toolService.updateTool(3L, "Dada de baja", null, null, user));
+                () -> toolService.updateTool(3L, ToolState.WRITTEN_OFF, null, null, user));
     }
 
     // getToolByName
 
+    //moveUnits
+
+    @Test
+    void moveUnits_movesQuantity_createsTarget_andWritesOneKardex() {
+        ToolEntity disp = tool(10L, "Taladro", "Elec", ToolState.AVAILABLE, 30000, true, 50);
+        given(toolRepository.findById(10L)).willReturn(Optional.of(disp));
+        given(toolRepository.lockMove(disp, ToolState.IN_REPAIR))
+                .willReturn(tool(20L, "Taladro", "Elec", ToolState.IN_REPAIR, 30000, false, 0));
+        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> inv.getArgument(0));
+
+        ToolEntity out = toolService.moveUnits(10L, ToolState.IN_REPAIR, 40, user);
+
+        assertEquals(10, disp.getAmount());
+        assertEquals(20L, out.getId());
+        assertEquals(40, out.getAmount());
+        assertFalse(out.isAvailable());
+        verify(kardexRepository, times(1)).save(argThat(k ->
+                k.getType() == MovementType.TO_REPAIR
+                        && k.getStock() == 40
+                        && k.getQuantity() == 40));
+        verify(eventPublisher).publishEvent(argThat((Object e) ->
+                e instanceof ToolsChangedEvent ev && ev.tools().size() == 2));
+    }
+
+    @Test
+    void moveUnits_batch_sumsSamePair_intoOneKardexRow() {
+        ToolEntity prest = tool(5L, "Sierra", "Man", ToolState.LOANED, 1000, false, 10);
+        ToolEntity baja = tool(6L, "Sierra", "Man", ToolState.WRITTEN_OFF, 1000, false, 1);
+        given(toolRepository.findById(5L)).willReturn(Optional.of(prest));
+        given(toolRepository.lockMove(prest, ToolState.WRITTEN_OFF)).willReturn(baja);
+        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> inv.getArgument(0));
+
+        List<ToolEntity> out = toolService.moveUnits(List.of(move(5L, ToolState.WRITTEN_OFF, 3), move(5L, ToolState.WRITTEN_OFF, 2)), user);
+
+        assertEquals(1, out.size());
+        assertEquals(5, prest.getAmount());
+        assertEquals(6, baja.getAmount());
+        verify(kardexRepository, times(1)).save(argThat(k -> k.getQuantity() == 5 && k.getStock() == 6));
+    }
+
+    @Test
+    void moveUnits_rejectedPair_leavesTheEarlierPairsUntouched() {
+        ToolEntity prest = tool(5L, "Sierra", "Man", ToolState.LOANED, 1000, false, 10);
+        ToolEntity disp = tool(6L, "Sierra", "Man", ToolState.AVAILABLE, 1000, true, 1);
+        ToolEntity emptyDrill = tool(7L, "Taladro", "Elec", ToolState.LOANED, 1000, false, 0);
+        given(toolRepository.findById(5L)).willReturn(Optional.of(prest));
+        given(toolRepository.findById(7L)).willReturn(Optional.of(emptyDrill));
+        given(toolRepository.lockMove(prest, ToolState.AVAILABLE)).willReturn(disp);
+        given(toolRepository.lockMove(emptyDrill, ToolState.AVAILABLE))
+                .willReturn(tool(8L, "Taladro", "Elec", ToolState.AVAILABLE, 1000, true, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> toolService.moveUnits(
+                List.of(move(5L, ToolState.AVAILABLE, 3), move(7L, ToolState.AVAILABLE, 1)), user));
+
+        // every pair is checked before a bucket changes, so the caller's transaction has nothing to undo
+        assertEquals(10, prest.getAmount());
+        assertEquals(1, disp.getAmount());
+        verify(toolRepository, never()).save(any());
+        verifyNoInteractions(kardexRepository, eventPublisher);
+    }
+
+    @Test
+    void moveUnits_chainedPairs_checkTheStockLeftByTheEarlierOnes() {
+        ToolEntity disp = tool(10L, "Taladro", "Elec", ToolState.AVAILABLE, 30000, true, 1);
+        ToolEntity prest = tool(11L, "Taladro", "Elec", ToolState.LOANED, 30000, false, 0);
+        given(toolRepository.findById(10L)).willReturn(Optional.of(disp));
+        given(toolRepository.findById(11L)).willReturn(Optional.of(prest));
+        given(toolRepository.lockMove(disp, ToolState.LOANED)).willReturn(prest);
+        given(toolRepository.lockMove(prest, ToolState.AVAILABLE)).willReturn(disp);
+        given(toolRepository.save(any(ToolEntity.class))).willAnswer(inv -> inv.getArgument(0));
+
+        // the unit moved out by the first pair is the one the second pair brings back
+        toolService.moveUnits(List.of(move(10L, ToolState.LOANED, 1), move(11L, ToolState.AVAILABLE, 1)), user);
+
+        assertEquals(1, disp.getAmount());
+        assertEquals(0, prest.getAmount());
+        verify(kardexRepository, times(2)).save(any(KardexEntity.class));
+    }
+
+    @Test
+    void moveUnits_notEnoughStock_orSameState_throws() {
+        ToolEntity disp = tool(10L, "Taladro", "Elec", ToolState.AVAILABLE, 30000, true, 2);
+        given(toolRepository.findById(10L)).willReturn(Optional.of(disp));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> toolService.moveUnits(10L, ToolState.LOANED, 3, user));
+        assertTrue(ex.getMessage().contains("Not enough stock"));
+        assertThrows(IllegalArgumentException.class, () -> toolService.moveUnits(10L, ToolState.AVAILABLE, 1, user));
+        assertThrows(IllegalArgumentException.class, () -> toolService.moveUnits(10L, null, 1, user));
+        assertThrows(IllegalArgumentException.class, () -> toolService.moveUnits(10L, ToolState.LOANED, 0, user));
+        verify(toolRepository, never()).save(any());
+        verifyNoInteractions(kardexRepository);
+    }
+
+    @Test
+    void moveUnits_checksStockAfterLockingTheSource() {
+        ToolEntity disp = tool(10L, "Taladro", "Elec", ToolState.AVAILABLE, 30000, true, 5);
+        given(toolRepository.findById(10L)).willReturn(Optional.of(disp));
+        // a concurrent move took the units before our lock was granted; the reload shows it
+        given(toolRepository.lockMove(disp, ToolState.IN_REPAIR)).willAnswer(inv -> {
+            disp.setAmount(1);
+            return tool(20L, "Taladro", "Elec", ToolState.IN_REPAIR, 30000, false, 0);
+        });
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> toolService.moveUnits(10L, ToolState.IN_REPAIR, 3, user));
+        assertTrue(ex.getMessage().contains("Available: 1"));
+        verify(toolRepository, never()).save(any());
+    }
+
     @Test
     void getToolByName_ok() {
-        ToolEntity a = tool(1L, "Martillo", "Man", "Disponible", 1, true, 2);
+        ToolEntity a = tool(1L, "Martillo", "Man", ToolState.AVAILABLE, 1, true, 2);
         given(toolRepository.findByName("Martillo")).willReturn(List.of(a));
 
         ToolEntity out = toolService.getToolByName("   Martillo  ");
@@ -316,55 +446,65 @@ class ToolServiceTest {
         assertThrows(IllegalArgumentException.class, () -> toolService.getToolByName("Inexistente"));
     }
 
-    //  getAllNamesWithCategory
+    //  catalog-backed listings
 
     @Test
-    void getAllNamesWithCategory_uniqueAndStableOrder() {
-        ToolEntity a = tool(1L, "Taladro", "Elec", "Disponible", 1, true, 1);
-        ToolEntity b = tool(2L, "Taladro", "Elec", "Prestada", 1, false, 1); // duplicado por name+cat
-        ToolEntity c = tool(3L, "Sierra", "Manual", "Disponible", 1, true, 1);
-        ToolEntity d = tool(4L, null, "Manual", "Disponible", 1, true, 1);  // ignorar nulls
-        ToolEntity e = tool(5L, "Llave", null, "Disponible", 1, true, 1);   // ignorar nulls
-
-        given(toolRepository.findAll()).willReturn(List.of(a,b,c,d,e));
+    void getAllNamesWithCategory_servedFromCatalog() {
+        ToolService.NameCategory nc = new ToolService.NameCategory("Taladro", "Elec");
+        given(toolCatalog.current()).willReturn(snapshot(List.of(), List.of(nc), Map.of()));
 
         List<ToolService.NameCategory> out = toolService.getAllNamesWithCategory();
 
-        assertEquals(2, out.size());
-        assertEquals("Taladro", out.get(0).getName());
-        assertEquals("Elec", out.get(0).getCategory());
-        assertEquals("Sierra", out.get(1).getName());
-        assertEquals("Manual", out.get(1).getCategory());
+        assertEquals(List.of(nc), out);
+        verifyNoInteractions(toolRepository);
     }
 
-    // listAvailable / listByState
-
     @Test
-    void listAvailable_delegatesCorrectly() {
-        given(toolRepository.findAllByInitialStateIgnoreCaseAndAmountGreaterThan("Disponible", 0))
-                .willReturn(List.of());
-        assertNotNull(toolService.listAvailable());
-        verify(toolRepository).findAllByInitialStateIgnoreCaseAndAmountGreaterThan("Disponible", 0);
+    void listAvailable_servedFromCatalog() {
+        ToolEntity a = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 1, true, 2);
+        given(toolCatalog.current()).willReturn(snapshot(List.of(a), List.of(), Map.of()));
+
+        assertEquals(List.of(a), toolService.listAvailable());
+        verifyNoInteractions(toolRepository);
     }
 
     @Test
     void listByState_requiresState_andBranches() {
         assertThrows(IllegalArgumentException.class, () -> toolService.listByState(null));
-        assertThrows(IllegalArgumentException.class, () -> toolService.listByState("  "));
 
-        given(toolRepository.findAllByInitialStateIgnoreCaseAndAmountGreaterThan("Disponible", 0))
-                .willReturn(List.of());
-        toolService.listByState("Disponible");
-        verify(toolRepository).findAllByInitialStateIgnoreCaseAndAmountGreaterThan("Disponible", 0);
+        ToolEntity a = tool(1L, "Taladro", "Elec", ToolState.AVAILABLE, 1, true, 2);
+        ToolEntity p = tool(2L, "Taladro", "Elec", ToolState.LOANED, 1, false, 1);
+        given(toolCatalog.current()).willReturn(snapshot(List.of(a), List.of(), Map.of(ToolState.LOANED, List.of(p))));
 
-        given(toolRepository.findAllByInitialStateIgnoreCase("Prestada")).willReturn(List.of());
-        toolService.listByState("Prestada");
-        verify(toolRepository).findAllByInitialStateIgnoreCase("Prestada");
+        assertEquals(List.of(a), toolService.listByState(ToolState.AVAILABLE));
+        assertEquals(List.of(p), toolService.listByState(ToolState.LOANED));
+        assertEquals(List.of(), toolService.listByState(ToolState.IN_REPAIR));
+        verifyNoInteractions(toolRepository);
+    }
+
+    @Test
+    void catalogVersion_delegates() {
+        given(toolCatalog.version()).willReturn(7L);
+        assertEquals(7L, toolService.catalogVersion());
     }
 
     //helpers
 
-    private static ToolEntity tool(Long id, String name, String cat, String state,
+    private static ToolCatalog.Snapshot snapshot(List<ToolEntity> available,
+                                                 List<ToolService.NameCategory> names,
+                                                 Map<ToolState, List<ToolEntity>> byState) {
+        return new ToolCatalog.Snapshot(1L, Map.of(), available, names, byState);
+    }
+
+    private static ToolService.Move move(Long toolId, ToolState state, int quantity) {
+        ToolService.Move m = new ToolService.Move();
+        m.toolId = toolId;
+        m.state = state;
+        m.quantity = quantity;
+        return m;
+    }
+
+    private static ToolEntity tool(Long id, String name, String cat, ToolState state,
                                    Integer repValue, boolean available, int amount) {
         ToolEntity t = new ToolEntity();
         t.setId(id);
@@ -0,0 +1,138 @@
+package com.example.demo.services;
+
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
+import com.example.demo.repositories.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserImportServiceTest {
+
+    @Mock UserRepository userRepository;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock ChangeSequenceTracker changeSequence;
+    @Mock CacheInvalidationPublisher cacheInvalidation;
+    @Mock EntityManagerFactory entityManagerFactory;
+    @Mock Cache cache;
+    @Spy ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks UserImportService importService;
+
+    @Test
+    void importCsv_normalizesDeduplicates_andReportsPerRow() throws Exception {
+        String csv = """
+                email,name,rut,phone
+                ana@example.com,Ana,11.111.111-1,+56 9 1234
+                ANA@example.com,Ana bis,,
+                bad@example.com,Bad,12,
+                old@example.com,Old,22.222.222-2,
+                """;
+        given(userRepository.findExistingEmails(anyCollection())).willReturn(List.of("old@example.com"));
+        given(userRepository.findExistingRuts(anyCollection())).willReturn(List.of());
+        givenSecondLevelCache();
+
+        ImportSupport.ImportReport out = importService.importUsers(stream(csv), UserImportService.Format.CSV);
+
+        assertEquals(4, out.getTotal());
+        assertEquals(1, out.getInserted());
+        assertEquals(List.of(3, 4, 5), out.getErrors().stream().map(ImportSupport.RowError::getLine).toList());
+        assertTrue(out.getErrors().get(2).getMessage().contains("email already exists"));
+
+        // only the valid row goes in the batch
+        verify(jdbcTemplate).batchUpdate(anyString(), anyCollection(), eq(1),
+                anyRowSetter());
+        verify(userRepository, never()).save(any());
+        // cached user lookups are dropped here and on the other replicas
+        verify(cache).evictQueryRegions();
+        verify(cacheInvalidation).publishAfterCommit("user:*");
+    }
+
+    @Test
+    void importNdjson_fallsBackRowByRow_whenBatchHitsDuplicate() throws Exception {
+        String ndjson = """
+                {"email":"a@example.com","rut":"11111111-1"}
+                not json
+                {"email":"b@example.com"}
+                """;
+        given(userRepository.findExistingEmails(anyCollection())).willReturn(List.of());
+        given(userRepository.findExistingRuts(anyCollection())).willReturn(List.of());
+        given(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), anyRowSetter()))
+                .willThrow(new DuplicateKeyException("duplicate key"));
+        given(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .willReturn(1)
+                .willThrow(new DuplicateKeyException("duplicate key"));
+        givenSecondLevelCache();
+
+        ImportSupport.ImportReport out = importService.importUsers(stream(ndjson), UserImportService.Format.NDJSON);
+
+        assertEquals(3, out.getTotal());
+        assertEquals(1, out.getInserted());
+        assertEquals(2, out.getErrors().size());
+        assertEquals(2, out.getErrors().get(0).getLine()); // invalid JSON
+        assertEquals(3, out.getErrors().get(1).getLine()); // lost the race
+        verify(jdbcTemplate, times(2)).update(anyString(), any(PreparedStatementSetter.class));
+        // the row that went in on its own is stamped for delta sync too
+        verify(changeSequence).markChanged(ChangeSequenceTracker.CLIENT, List.of());
+    }
+
+    @Test
+    void importCsv_nothingInserted_keepsTheCache() throws Exception {
+        given(userRepository.findExistingEmails(anyCollection())).willReturn(List.of("old@example.com"));
+
+        ImportSupport.ImportReport out = importService.importUsers(
+                stream("email\nold@example.com\n"), UserImportService.Format.CSV);
+
+        assertEquals(0, out.getInserted());
+        verifyNoInteractions(entityManagerFactory, cacheInvalidation);
+    }
+
+    @Test
+    void importCsv_requiresEmailColumn() {
+        assertThrows(IllegalArgumentException.class,
+                () -> importService.importUsers(stream("name,rut\nAna,1-9\n"), UserImportService.Format.CSV));
+    }
+
+    @Test
+    void splitCsv_handlesQuotesAndSemicolons() {
+        assertEquals(List.of("a", "b;c", "d\"e"), ImportSupport.splitCsv("a;\"b;c\",\"d\"\"e\""));
+    }
+
+    // typed matcher: any(ParameterizedPreparedStatementSetter.class) is a raw type and an unchecked call
+    private static ParameterizedPreparedStatementSetter<Object> anyRowSetter() {
+        return any();
+    }
+
+    private void givenSecondLevelCache() {
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        given(entityManagerFactory.unwrap(SessionFactory.class)).willReturn(sessionFactory);
+        given(sessionFactory.getCache()).willReturn(cache);
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.services;
 
+import com.example.demo.config.CacheInvalidationPublisher;
+import com.example.demo.config.ChangeSequenceTracker;
 import com.example.demo.entities.UserEntity;
 import com.example.demo.repositories.LoanRepository;
 import com.example.demo.repositories.UserRepository;
@@ -10,6 +12,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Map;
@@ -25,6 +28,8 @@ class UserServiceTest {
 
     @Mock UserRepository userRepository;
     @Mock LoanRepository loanRepository;
+    @Mock ChangeSequenceTracker changeSequence;
+    @Mock CacheInvalidationPublisher cacheInvalidation;
 
     @InjectMocks UserService userService;
 
@@ -108,6 +113,25 @@ class UserServiceTest {
         verify(userRepository).save(out);
     }
 
+    @Test
+    void provisionFromJwt_adoptsImportedUser_withPendingKeycloakId() {
+        UserEntity imported = new UserEntity();
+        imported.setId(30L);
+        imported.setKeycloakId(UserService.PENDING_KEYCLOAK_PREFIX + "abc");
+        imported.setEmail("ana@example.com");
+        imported.setRut("11111111-1");
+
+        given(userRepository.findByKeycloakId("kc-123")).willReturn(Optional.empty());
+        given(userRepository.findByEmail("ana@example.com")).willReturn(imported);
+        given(userRepository.save(any(UserEntity.class))).willAnswer(inv -> inv.getArgument(0));
+
+        UserEntity out = userService.provisionFromJwt(jwtBase);
+
+        assertEquals(30L, out.getId());
+        assertEquals("kc-123", out.getKeycloakId());
+        assertEquals("11111111-1", out.getRut());
+    }
+
     // provisionFromJwt: create new
 
     @Test
@@ -254,12 +278,7 @@ class UserServiceTest {
         // "11.111.111-1" -> "11111111-1"
         given(userRepository.findByRut("11111111-1")).willReturn(u);
 
-        given(loanRepository.existsByRutUserAndReturnDateBeforeAndLateReturnDateIsNull(eq("11111111-1"), any()))
-                .willReturn(true);
-        given(loanRepository.existsByRutUserAndLateFineGreaterThanAndLateFinePaidIsFalse("11111111-1", 0))
-                .willReturn(false);
-        given(loanRepository.existsByRutUserAndDamagePenaltyGreaterThanAndDamagePenaltyPaidIsFalse("11111111-1", 0))
-                .willReturn(false);
+        given(loanRepository.hasBlockingLoans(eq("11111111-1"), any())).willReturn(true);
 
         given(userRepository.save(any(UserEntity.class))).willAnswer(inv -> inv.getArgument(0));
 
@@ -274,12 +293,7 @@ class UserServiceTest {
         UserEntity u = new UserEntity(); u.setRut("22222222-2"); u.setActive(false);
         given(userRepository.findByRut("22222222-2")).willReturn(u);
 
-        given(loanRepository.existsByRutUserAndReturnDateBeforeAndLateReturnDateIsNull(eq("22222222-2"), any()))
-                .willReturn(false);
-        given(loanRepository.existsByRutUserAndLateFineGreaterThanAndLateFinePaidIsFalse("22222222-2", 0))
-                .willReturn(false);
-        given(loanRepository.existsByRutUserAndDamagePenaltyGreaterThanAndDamagePenaltyPaidIsFalse("22222222-2", 0))
-                .willReturn(false);
+        given(loanRepository.hasBlockingLoans(eq("22222222-2"), any())).willReturn(false);
 
         given(userRepository.save(any(UserEntity.class))).willAnswer(inv -> inv.getArgument(0));
 
@@ -294,4 +308,46 @@ class UserServiceTest {
         assertNull(userService.recomputeActiveStatus("00.000.000-0"));
         verify(userRepository, never()).save(any());
     }
+
+    @Test
+    void takeLoanSlot_countsLoan_andMarksClientChanged() {
+        UserEntity u = new UserEntity(); u.setId(7L); u.setRut("11111111-1");
+        given(userRepository.incrementLoansBelow("11111111-1", 5)).willReturn(1);
+
+        assertTrue(userService.takeLoanSlot(u, 5));
+        verify(changeSequence).markChanged(ChangeSequenceTracker.CLIENT, List.of(7L));
+        verify(cacheInvalidation).publishAfterCommit("user:7");
+    }
+
+    @Test
+    void takeLoanSlot_returnsFalse_whenLimitReached() {
+        UserEntity u = new UserEntity(); u.setId(7L); u.setRut("11111111-1");
+        given(userRepository.incrementLoansBelow("11111111-1", 5)).willReturn(0);
+
+        assertFalse(userService.takeLoanSlot(u, 5));
+        verifyNoInteractions(changeSequence, cacheInvalidation);
+    }
+
+    @Test
+    void markStatusDirty_recomputesEachRutOnce_beforeCommit() {
+        UserEntity u = new UserEntity(); u.setRut("11111111-1"); u.setActive(true);
+        given(userRepository.findByRut("11111111-1")).willReturn(u);
+        given(loanRepository.hasBlockingLoans(eq("11111111-1"), any())).willReturn(true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.markStatusDirty("11.111.111-1");
+            userService.markStatusDirty("11111111-1");
+            verifyNoInteractions(loanRepository);             // nothing until the commit
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+        } finally {
+            TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(0));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertFalse(u.isActive());
+        verify(userRepository, times(1)).findByRut("11111111-1");
+        verify(loanRepository, times(1)).hasBlockingLoans(eq("11111111-1"), any());
+    }
 }